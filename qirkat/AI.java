@@ -1,140 +1,135 @@
 package qirkat;
 
 import java.util.ArrayList;
-
-import static qirkat.PieceColor.*;
-import static qirkat.Move.*;
-
-/** A Player that computes its own moves.
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static qirkat.SearchScheduler.Priority.*;
+
+/** A Player that computes its own moves.  Its searches start from, and
+ *  add to, the SearchState of its Game, so that each benefits from the
+ *  work of those before it.  If its Game is pondering, then after
+ *  choosing each move it continues to search the opponent's possible
+ *  replies on a separate thread until its next turn, so that a reply that
+ *  it has already examined needs no further search.
  *  @author Henry Xu
  */
 class AI extends Player {
 
     /** Maximum minimax search depth before going to static evaluation. */
-    private static final int MAX_DEPTH = 8;
-    /** A position magnitude indicating a win (for white if positive, black
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /** A magnitude greater than a normal value. */
-    private static final int INFTY = Integer.MAX_VALUE;
+    static final int MAX_DEPTH = 8;
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
         super(game, myColor);
+        _state = game.searchState();
     }
 
     @Override
     Move myMove() {
+        stopPondering();
         Main.startTiming();
         Move move = findMove();
         Main.endTiming();
 
-        if (myColor() == WHITE) {
-            System.out.println("White" + " moves " + move.toString() + ".");
-        } else {
-            System.out.println("Black" + " moves " + move.toString() + ".");
+        game().reportMove("%s moves %s.", myColor(), move);
+        if (game().pondering()) {
+            startPondering(move);
         }
-
-
         return move;
     }
 
+    @Override
+    void endGame() {
+        stopPondering();
+    }
+
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
+     *  is a move, taking no more than my game's time budget.  The search
+     *  runs on my game's scheduler, if it has one, with priority according
+     *  to whether my opponent is a person waiting for my move. */
     private Move findMove() {
-        Board b = new Board(board());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+        long budget = game().searchBudget();
+        SearchScheduler scheduler = game().scheduler();
+        if (scheduler == null) {
+            Board b = new Board(board());
+            long deadline = budget <= 0 ? Search.NO_DEADLINE
+                : System.nanoTime() + budget * 1_000_000;
+            return new Search(_state).findMove(b, MAX_DEPTH, deadline);
+        }
+        Future<Move> task =
+            scheduler.submit(_state, board(), MAX_DEPTH, budget,
+                             game().isManual(myColor().opposite())
+                             ? INTERACTIVE : BATCH);
+        while (true) {
+            try {
+                return task.get();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
         }
-        return _lastFoundMove;
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
+    /** Start searching the replies to my move MOV in the background. */
+    private void startPondering(Move mov) {
+        Board b = new Board(board());
+        b.makeMove(mov);
+        if (b.gameOver()) {
+            return;
+        }
+        Search search = new Search(_state);
+        _ponderSearch = search;
+        _ponderer = new Thread(() -> ponder(search, b), "qirkat-ponder");
+        _ponderer.setDaemon(true);
+        _ponderer.start();
+    }
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        Move best;
-        best = null;
-        int bestVal;
-        if (depth == 0 || board.gameOver()) {
-            return staticScore(board);
+    /** Using SEARCH, search the position after each possible reply on
+     *  BOARD to the depth of a normal move, starting with the reply that
+     *  SEARCH's table predicts, until SEARCH is stopped. */
+    private static void ponder(Search search, Board board) {
+        ArrayList<Move> replies = board.getMoves();
+        int predicted = replies.indexOf(search.tableMove(board));
+        if (predicted > 0) {
+            Collections.swap(replies, 0, predicted);
         }
-        if (sense == 1) {
-            bestVal = -INFTY;
-            ArrayList<Move> moves = board.getMoves();
-            for (Move mov: moves) {
-                board.makeMove(mov);
-                int response = findMove(board, depth - 1,
-                        !saveMove, -1, alpha, beta);
-                board.undo();
-                if (response >= bestVal) {
-                    best = mov;
-                    bestVal = response;
-                    alpha = Math.max(response, alpha);
-                }
-                if (beta <= alpha) {
-                    break;
-                }
+        for (Move reply : replies) {
+            board.makeMove(reply);
+            if (!board.gameOver()) {
+                search.searchPosition(board, MAX_DEPTH);
             }
-        } else {
-            bestVal = INFTY;
-            ArrayList<Move> moves = board.getMoves();
-            for (Move mov: moves) {
-                board.makeMove(mov);
-                int response = findMove(board, depth - 1,
-                        !saveMove, 1, alpha, beta);
-                board.undo();
-                if (response <= bestVal) {
-                    best = mov;
-                    bestVal = response;
-                    beta = Math.min(response, beta);
-                }
-                if (beta <= alpha) {
-                    break;
-                }
+            board.undo();
+            if (search.stopped()) {
+                return;
             }
         }
-
-
-        if (saveMove) {
-            _lastFoundMove = best;
-        }
-
-        return bestVal;
     }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        if (board.gameOver()) {
-            if (board.whoseMove() == WHITE) {
-                return -WINNING_VALUE;
-            } else {
-                return WINNING_VALUE;
-            }
+    /** Stop pondering, if I am, and wait for the pondering thread to
+     *  finish. */
+    private void stopPondering() {
+        if (_ponderer == null) {
+            return;
         }
-        int white = 0, black = 0;
-        int whiteMoves = 0, blackMoves = 0;
-        int whiteJumps = 0, blackJumps = 0;
-        for (int i = 0; i < SIDE * SIDE; i++) {
-            if (board.get(i) == WHITE) {
-                white += 1;
-                whiteMoves += SIDE * SIDE - i;
-            }
-            if (board.get(i) == BLACK) {
-                black += 1;
-                blackMoves += i;
+        _ponderSearch.stop();
+        while (_ponderer.isAlive()) {
+            try {
+                _ponderer.join();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
             }
         }
-        return ((white - black) * 1000) + (whiteMoves - blackMoves) * 100;
+        _ponderer = null;
+        _ponderSearch = null;
     }
+
+    /** What my game's searches have learned so far. */
+    private final SearchState _state;
+    /** The thread searching on my opponent's time, or null if none. */
+    private Thread _ponderer;
+    /** The search being performed by _ponderer. */
+    private Search _ponderSearch;
 }
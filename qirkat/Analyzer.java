@@ -0,0 +1,162 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static qirkat.PieceColor.*;
+
+/** Analyzes a stream of positions on a pool of worker threads, finding
+ *  the best move in each.  Each input line describes a position as do
+ *  the operands of the 'set' command: the player to move (white or
+ *  black, in any case) and the 25 squares, as for Board.setPieces.
+ *  Blank lines and lines starting with '#' are ignored.  Each position
+ *  gets one output line,
+ *      N COLOR PIECES MOVE SCORE DEPTH NODES MSEC
+ *  giving its input line number N, the position (COLOR in lower case),
+ *  the best move ('-' if the game is over), its score (positive if good
+ *  for white), the depth of the deepest search completed, and the
+ *  positions visited and milliseconds taken, or
+ *      N error MESSAGE
+ *  if the line does not describe a position.  Output lines are in input
+ *  order, each written as soon as it and all before it are done, and
+ *  only a few positions per worker are read ahead, so that a file of any
+ *  length may be analyzed in bounded memory.  Each worker keeps its own
+ *  SearchState, reused from one of its positions to the next.
+ *  @author Henry Xu
+ */
+class Analyzer {
+
+    /** Default depth limit of each search. */
+    static final int DEFAULT_DEPTH = 8;
+
+    /** Number of positions per worker read ahead of the output. */
+    private static final int PENDING_PER_WORKER = 4;
+    /** An input line describing a position. */
+    private static final Pattern POSITION =
+        Pattern.compile("\\s*((?i:white|black))\\s+((?:[bw-]\\s*){25})");
+
+    /** An analyzer that searches WORKERS positions at once, each to at
+     *  most DEPTH levels and for at most BUDGET milliseconds (0 for no
+     *  limit). */
+    Analyzer(int workers, int depth, long budget) {
+        _workers = workers;
+        _depth = depth;
+        _budget = budget;
+    }
+
+    /** Analyze the positions read from INPUT, writing the results to
+     *  OUTPUT, and return the number of positions analyzed. */
+    int analyze(BufferedReader input, PrintWriter output)
+        throws IOException {
+        ExecutorService pool =
+            Executors.newFixedThreadPool(_workers, this::newWorker);
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int lineNum, count;
+        count = 0;
+        try {
+            lineNum = 0;
+            while (true) {
+                String line = input.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNum += 1;
+                if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                int n = lineNum;
+                pending.add(pool.submit(() -> analyze(n, line)));
+                count += 1;
+                if (pending.size() > _workers * PENDING_PER_WORKER) {
+                    write(output, pending.remove());
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(output, pending.remove());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    /** Return the output line for LINE, which is input line number N. */
+    private String analyze(int n, String line) {
+        Matcher m = POSITION.matcher(line);
+        if (!m.matches()) {
+            return String.format("%d error bad position: %s", n,
+                                 line.trim());
+        }
+        String color = m.group(1).toLowerCase();
+        Board board = new Board();
+        try {
+            board.setPieces(m.group(2), color.equals("white") ? WHITE
+                            : BLACK);
+        } catch (IllegalArgumentException excp) {
+            return String.format("%d error %s: %s", n, excp.getMessage(),
+                                 line.trim());
+        }
+        String pieces = m.group(2).replaceAll("\\s", "");
+        if (board.gameOver()) {
+            return String.format("%d %s %s - %d 0 0 0", n, color, pieces,
+                                 Search.evaluate(board));
+        }
+        long start = System.nanoTime();
+        Search search = new Search(_states.get());
+        Move mov = search.findMove(board, _depth,
+                                   _budget <= 0 ? Search.NO_DEADLINE
+                                   : start + _budget * 1_000_000);
+        return String.format("%d %s %s %s %d %d %d %d", n, color, pieces,
+                             mov, search.valueFound(), search.depthReached(),
+                             search.nodes(),
+                             (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Write the result of RESULT, when it is available, to OUTPUT. */
+    private static void write(PrintWriter output, Future<String> result)
+        throws IOException {
+        while (true) {
+            try {
+                output.println(result.get());
+                break;
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+        output.flush();
+        if (output.checkError()) {
+            throw new IOException("error writing results");
+        }
+    }
+
+    /** Return a new worker thread that runs R. */
+    private Thread newWorker(Runnable r) {
+        Thread t = new Thread(r, "qirkat-analyze-"
+                              + _threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+
+    /** Number of positions searched at once. */
+    private final int _workers;
+    /** Depth limit of each search. */
+    private final int _depth;
+    /** Time limit of each search (milliseconds), or 0 for none. */
+    private final long _budget;
+    /** Number of worker threads created. */
+    private final AtomicInteger _threads = new AtomicInteger();
+    /** Each worker's knowledge from its previous searches. */
+    private final ThreadLocal<SearchState> _states =
+        ThreadLocal.withInitial(SearchState::new);
+}
@@ -0,0 +1,75 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of batch position analysis.
+ *  @author Henry Xu
+ */
+public class AnalyzerTest {
+
+    /** Positions analyzed, as for Board.setPieces. */
+    private static final String[] POSITIONS = {
+        "wwwwwwwwwwbb-wwbbbbbbbbbb",
+        "----- --w-- --b-- ----- -----",
+        "--w-w---------wb-------bb",
+        "b---- ----- ----- ----- ----w",
+    };
+
+    @Test
+    public void testAnalyze() throws Exception {
+        String input = String.format("# comment%n"
+                                     + "white %s%n"
+                                     + "%n"
+                                     + "WHITE %s%n"
+                                     + "black %s%n"
+                                     + "set white%n"
+                                     + "black %s%n"
+                                     + "white WWWWWWWWWWBB-WWBBBBBBBBBB%n",
+                                     (Object[]) POSITIONS);
+        StringWriter output = new StringWriter();
+        int n = new Analyzer(2, 3, 0)
+            .analyze(new BufferedReader(new StringReader(input)),
+                     new PrintWriter(output));
+        assertEquals(6, n);
+        String[] lines = output.toString().split("\\R");
+        assertEquals(6, lines.length);
+        int[] lineNums = { 2, 4, 5, 7 };
+        PieceColor[] who = { WHITE, WHITE, BLACK, BLACK };
+        int p = 0;
+        for (int i = 0; i < lines.length; i += 1) {
+            String[] fields = lines[i].split(" ");
+            if (i == 3 || i == 5) {
+                assertEquals(i == 3 ? "6" : "8", fields[0]);
+                assertEquals("error", fields[1]);
+                continue;
+            }
+            assertEquals(8, fields.length);
+            assertEquals(String.valueOf(lineNums[p]), fields[0]);
+            assertEquals(who[p].toString().toLowerCase(), fields[1]);
+            Board b = new Board();
+            b.setPieces(POSITIONS[p], who[p]);
+            assertEquals(POSITIONS[p].replaceAll(" ", ""), fields[2]);
+            if (b.gameOver()) {
+                assertEquals("-", fields[3]);
+            } else {
+                Search search = new Search(new SearchState(12));
+                search.findMove(new Board(b), 3);
+                assertTrue(b.legalMove(Move.parseMove(fields[3])));
+                assertEquals(String.valueOf(search.valueFound()),
+                             fields[4]);
+                assertEquals("3", fields[5]);
+            }
+            p += 1;
+        }
+    }
+
+}
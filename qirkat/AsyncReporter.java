@@ -0,0 +1,170 @@
+package qirkat;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A Reporter that formats messages on the calling thread and writes them
+ *  to PrintStreams from a background thread, so that the game (and in
+ *  particular, an AI) never waits for console output.  Error messages go
+ *  to one stream and all others to another.  Messages are queued on
+ *  lock-free queues holding at most a fixed number of them in all; what
+ *  happens when they are full is determined by a Policy.  The writer
+ *  thread empties the queues in batches, writing each batch at once.
+ *  @author Henry Xu
+ */
+class AsyncReporter implements Reporter {
+
+    /** What to do with a message when the queue is full. */
+    static enum Policy {
+        /** Wait for room in the queue. */
+        BLOCK,
+        /** Discard the message (the count of discarded messages is
+         *  reported by flush). */
+        DROP;
+    }
+
+    /** Default maximum number of queued messages. */
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /** Maximum number of messages written at once. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Longest time the writer sleeps without checking for messages, and
+     *  the time a blocked or flushing caller waits between checks
+     *  (nanoseconds). */
+    private static final long WRITER_IDLE = 10_000_000, CALLER_WAIT = 50_000;
+
+    /** A reporter that writes error messages to ERR and others to OUT,
+     *  queuing at most CAPACITY of them and handling overflow according
+     *  to POLICY. */
+    AsyncReporter(PrintStream out, PrintStream err, int capacity,
+                  Policy policy) {
+        _out = out;
+        _err = err;
+        _capacity = capacity;
+        _policy = policy;
+        _writer = new Thread(this::drain, "qirkat-reporter");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    @Override
+    public void errMsg(String format, Object... args) {
+        post(_errors, String.format(format, args));
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+        post(_queue, String.format(format, args));
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+        post(_queue, String.format(format, args));
+    }
+
+    /** Wait until all messages queued so far have been written. */
+    @Override
+    public void flush() {
+        long target = _accepted.get();
+        while (_written < target) {
+            LockSupport.unpark(_writer);
+            LockSupport.parkNanos(CALLER_WAIT);
+        }
+        long dropped = _dropped.getAndSet(0);
+        if (dropped > 0) {
+            _err.printf("[%d messages dropped]%n", dropped);
+        }
+        _err.flush();
+        _out.flush();
+    }
+
+    /** Return the number of messages discarded so far because the queue
+     *  was full. */
+    long dropped() {
+        return _dropped.get();
+    }
+
+    /** Add MSG to QUEUE for output, subject to my policy. */
+    private void post(ConcurrentLinkedQueue<String> queue, String msg) {
+        while (_size.getAndIncrement() >= _capacity) {
+            _size.getAndDecrement();
+            if (_policy == Policy.DROP) {
+                _dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(_writer);
+            LockSupport.parkNanos(CALLER_WAIT);
+        }
+        queue.offer(msg);
+        if (_accepted.getAndIncrement() == _written) {
+            LockSupport.unpark(_writer);
+        }
+    }
+
+    /** Body of the writer thread: repeatedly write out everything in the
+     *  queues, in batches. */
+    private void drain() {
+        StringBuilder batch = new StringBuilder(),
+            errBatch = new StringBuilder();
+        while (true) {
+            int n;
+            for (n = 0; n < BATCH_SIZE; n += 1) {
+                String msg = _errors.poll();
+                if (msg != null) {
+                    errBatch.append(msg).append(System.lineSeparator());
+                } else {
+                    msg = _queue.poll();
+                    if (msg == null) {
+                        break;
+                    }
+                    batch.append(msg).append(System.lineSeparator());
+                }
+                _size.getAndDecrement();
+            }
+            if (n > 0) {
+                if (errBatch.length() > 0) {
+                    _err.print(errBatch);
+                    _err.flush();
+                    errBatch.setLength(0);
+                }
+                if (batch.length() > 0) {
+                    _out.print(batch);
+                    _out.flush();
+                    batch.setLength(0);
+                }
+                _written += n;
+            } else {
+                LockSupport.parkNanos(WRITER_IDLE);
+            }
+        }
+    }
+
+    /** Destination of messages other than errors. */
+    private final PrintStream _out;
+    /** Destination of error messages. */
+    private final PrintStream _err;
+    /** Maximum number of queued messages. */
+    private final int _capacity;
+    /** Overflow policy. */
+    private final Policy _policy;
+    /** The thread that writes messages. */
+    private final Thread _writer;
+    /** Queued messages other than errors. */
+    private final ConcurrentLinkedQueue<String> _queue =
+        new ConcurrentLinkedQueue<>();
+    /** Queued error messages. */
+    private final ConcurrentLinkedQueue<String> _errors =
+        new ConcurrentLinkedQueue<>();
+    /** Number of messages queued or about to be queued. */
+    private final AtomicInteger _size = new AtomicInteger();
+    /** Number of messages accepted for output. */
+    private final AtomicLong _accepted = new AtomicLong();
+    /** Number of messages discarded. */
+    private final AtomicLong _dropped = new AtomicLong();
+    /** Number of messages written (updated only by the writer). */
+    private volatile long _written;
+}
@@ -1,9 +1,11 @@
 package qirkat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Formatter;
 import java.util.Observable;
-import java.util.Observer;
 
 import static java.lang.Math.abs;
 
@@ -35,10 +37,23 @@ class Board extends Observable {
         internalCopy(b);
     }
 
-    /** Return a constant view of me (allows any access method, but no
-     *  method that modifies it). */
-    Board constantView() {
-        return this.new ConstantBoard();
+    /** A board holding POSITION, with its history of moves. */
+    Board(Position position) {
+        _board = new PieceColor[SIDE * SIDE];
+        long key = position.key();
+        for (int k = 0; k < SIDE * SIDE; k += 1) {
+            set(k, get(key, k));
+        }
+        _whoseMove = whoseMove(key);
+        _gameOver = position.gameOver();
+        _history = position.history();
+        findCapturers();
+    }
+
+    /** Return an immutable snapshot of my current position.  Takes
+     *  constant time. */
+    Position snapshot() {
+        return new Position(key(), _history, _gameOver);
     }
 
     /** Clear me to my starting state, with pieces in their initial
@@ -48,8 +63,10 @@ class Board extends Observable {
         _gameOver = false;
 
         for (int i = 0; i < SIDE * SIDE; i++) {
-            _board[i] = ORIGIN[i];
+            set(i, ORIGIN[i]);
         }
+        findCapturers();
+        _legalMoves = null;
 
         resetMoveList();
         setChanged();
@@ -68,9 +85,15 @@ class Board extends Observable {
         for (int i = 0; i < SIDE * SIDE; i++) {
             _board[i] = b.get(i);
         }
-        for (Move mov: b.moveList) {
-            moveList.add(mov);
-        }
+        _white = b._white;
+        _black = b._black;
+        _history = b._history;
+        _whiteCapturers = b._whiteCapturers;
+        _blackCapturers = b._blackCapturers;
+        _legalMoves = b._legalMoves;
+        _network = b._network;
+        _accumulator =
+            b._accumulator == null ? null : b._accumulator.clone();
     }
 
     /** Set my contents as defined by STR.  STR consists of 25 characters,
@@ -107,6 +130,8 @@ class Board extends Observable {
             }
         }
 
+        findCapturers();
+        _legalMoves = null;
         if (isMove()) {
             _gameOver = false;
         } else {
@@ -146,61 +171,199 @@ class Board extends Observable {
     /** Set get(K) to V, where K is the linearized index of a square. */
     private void set(int k, PieceColor v) {
         assert validSquare(k);
+        if (_network != null && _board[k] != v) {
+            _network.update(_accumulator, k, _board[k], v);
+        }
         _board[k] = v;
+        _white &= ~(1L << k);
+        _black &= ~(1L << k);
+        if (v == WHITE) {
+            _white |= 1L << k;
+        } else if (v == BLACK) {
+            _black |= 1L << k;
+        }
+    }
+
+    /** Evaluate my positions with NETWORK from now on, keeping its
+     *  accumulator up to date as my pieces change, or stop doing so if
+     *  NETWORK is null. */
+    void useNetwork(Network network) {
+        _network = network;
+        _accumulator =
+            network == null ? null : network.accumulator(_white, _black);
+    }
+
+    /** Return the network that evaluates my positions, or null if
+     *  none. */
+    Network network() {
+        return _network;
+    }
+
+    /** Return the value of my position according to network().
+     *  Requires network() != null. */
+    int networkValue() {
+        return _network.evaluate(_accumulator);
+    }
+
+    /** Return a compact encoding of my position: bit K is set iff square K
+     *  holds a white piece, bit K + 25 iff it holds a black piece, and
+     *  bit 50 iff it is black's move. */
+    long key() {
+        long key = _white | (_black << KEY_BLACK_SHIFT);
+        if (_whoseMove == BLACK) {
+            key |= KEY_BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /** Return the 25-character board description (as for setPieces) of
+     *  the position encoded by KEY, as returned by key(). */
+    static String pieces(long key) {
+        char[] result = new char[SIDE * SIDE];
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            if ((key & (1L << k)) != 0) {
+                result[k] = 'w';
+            } else if ((key & (1L << (k + KEY_BLACK_SHIFT))) != 0) {
+                result[k] = 'b';
+            } else {
+                result[k] = '-';
+            }
+        }
+        return new String(result);
+    }
+
+    /* The rules are unchanged by reflecting the board from left to right
+     * (MIRROR) and by reflecting it from top to bottom while exchanging
+     * white and black, including the player to move (FLIP).  These
+     * commute and are their own inverses, so together with their
+     * combination and the identity they form a group of four symmetries,
+     * denoted by sets of those bits.  Tables of positions store each
+     * position in the orientation whose key is least (its canonical key),
+     * so that each stores one entry for up to four positions.  Under
+     * FLIP, white's gains are black's, so the values and outcomes that
+     * such tables record must change sides as well. */
+
+    /** Symmetries: reflection left to right, and reflection top to bottom
+     *  with exchange of colors. */
+    static final int MIRROR = 1, FLIP = 2;
+
+    /** Return the key of the position encoded by KEY, as returned by
+     *  key(), transformed by the symmetry SYM. */
+    static long transform(long key, int sym) {
+        if (sym == 0) {
+            return key;
+        }
+        long white = 0, black = 0;
+        for (int r = 0; r < SIDE; r += 1) {
+            int shift = r * SIDE;
+            long w = (key >>> shift) & ROW_MASK,
+                b = (key >>> (shift + KEY_BLACK_SHIFT)) & ROW_MASK;
+            if ((sym & MIRROR) != 0) {
+                w = REVERSED_ROWS[(int) w];
+                b = REVERSED_ROWS[(int) b];
+            }
+            if ((sym & FLIP) != 0) {
+                int dest = (SIDE - 1 - r) * SIDE;
+                white |= b << dest;
+                black |= w << dest;
+            } else {
+                white |= w << shift;
+                black |= b << shift;
+            }
+        }
+        long toMove = key & KEY_BLACK_TO_MOVE;
+        if ((sym & FLIP) != 0) {
+            toMove ^= KEY_BLACK_TO_MOVE;
+        }
+        return white | (black << KEY_BLACK_SHIFT) | toMove;
+    }
+
+    /** Return the symmetry that takes the position encoded by KEY to its
+     *  canonical orientation (and back). */
+    static int symmetry(long key) {
+        int best = 0;
+        long least = key;
+        for (int sym = 1; sym <= (MIRROR | FLIP); sym += 1) {
+            long image = transform(key, sym);
+            if (image < least) {
+                least = image;
+                best = sym;
+            }
+        }
+        return best;
+    }
+
+    /** Return the canonical key of the position encoded by KEY: the least
+     *  key of its images under the symmetries. */
+    static long canonicalKey(long key) {
+        return transform(key, symmetry(key));
+    }
+
+    /** Return the canonical key of my position. */
+    long canonicalKey() {
+        return canonicalKey(key());
+    }
+
+    /** Return the contents of the square at linearized index K in the
+     *  position encoded by KEY, as returned by key(). */
+    static PieceColor get(long key, int k) {
+        if ((key & (1L << k)) != 0) {
+            return WHITE;
+        } else if ((key & (1L << (k + KEY_BLACK_SHIFT))) != 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return the color of the player to move in the position encoded
+     *  by KEY, as returned by key(). */
+    static PieceColor whoseMove(long key) {
+        return (key & KEY_BLACK_TO_MOVE) != 0 ? BLACK : WHITE;
     }
 
-    /** Return true iff MOV is legal on the current board. */
+    /** Return true iff MOV is legal on the current board.  The moves
+     *  listed by getMoves are looked up in my LegalMoveCache, if I have
+     *  one, which spares interactive play and replays from generating
+     *  them more than once per position.  Any non-capturing move that is
+     *  legal is listed; a capture that is not (see getMoves) is checked
+     *  directly. */
     boolean legalMove(Move mov) {
-        if (mov.isJump()) {
-            return checkJump(mov, false);
+        if (legalMoves().contains(mov)) {
+            return true;
+        } else if (!mov.isJump()) {
+            return false;
         } else {
-            if (jumpPossible()) {
-                return false;
-            }
-            if (_whoseMove == WHITE && mov.row0() == '5') {
-                return false;
-            }
-            if (_whoseMove == BLACK && mov.row0() == '1') {
-                return false;
-            }
-            if (_board[mov.fromIndex()] != _whoseMove) {
-                return false;
-            }
-            if (_board[mov.toIndex()] != EMPTY) {
-                return false;
-            }
-            if (_whoseMove == WHITE && mov.row1() < mov.row0()) {
-                return false;
-            }
-            if (_whoseMove == BLACK && mov.row1() > mov.row0()) {
-                return false;
-            }
-            if (abs(mov.col0() - mov.col1()) > 2
-                    || abs(mov.row0() - mov.row1()) > 2) {
-                return false;
-            }
-            if (abs(mov.col0() - mov.col1()) + abs(mov.row0()
-                    - mov.row1()) == 3) {
-                return false;
-            }
-            if (mov.row0() != mov.row1() && mov.col0() != mov.col1()
-                    && mov.fromIndex() % 2 == 1) {
-                return false;
-            }
-            for (int i = moveList.size() - 1; i >= 0; i--) {
-                Move prevMove = moveList.get(i);
-                if (mov.fromIndex() == prevMove.fromIndex()
-                        || (mov.fromIndex() == prevMove.toIndex()
-                        && mov.toIndex() != prevMove.fromIndex())) {
-                    return true;
-                }
-                if (mov.fromIndex() == prevMove.toIndex()
-                        && mov.toIndex() == prevMove.fromIndex()) {
-                    return false;
-                }
-            }
+            return checkJump(mov, false);
         }
-        return true;
+    }
+
+    /** Return the legal moves from the current position, as listed by
+     *  getMoves.  The result must not be modified. */
+    List<Move> legalMoves() {
+        if (_legalMoves == null) {
+            _legalMoves =
+                _moveCache == null
+                ? Collections.unmodifiableList(getMoves())
+                : _moveCache.legalMoves(this);
+        }
+        return _legalMoves;
+    }
+
+    /** Return true iff MOV is one of the moves listed by getMoves, which
+     *  are generated afresh.  Searches check the moves they recall from
+     *  their tables with this rather than legalMove, so as to keep clear
+     *  of any LegalMoveCache. */
+    boolean listsMove(Move mov) {
+        return getMoves().contains(mov);
+    }
+
+    /** Look up my legal moves in CACHE from now on, or generate them
+     *  when needed if CACHE is null.  Copies of me do not inherit
+     *  CACHE. */
+    void useMoveCache(LegalMoveCache cache) {
+        _moveCache = cache;
+        _legalMoves = null;
     }
 
     /** A version for AI to speed up.
@@ -240,8 +403,9 @@ class Board extends Observable {
                     && mov.fromIndex() % 2 == 1) {
                 return false;
             }
-            for (int i = moveList.size() - 1; i >= 0; i--) {
-                Move prevMove = moveList.get(i);
+            for (Position.History h = _history; !h.isEmpty();
+                 h = h.previous()) {
+                Move prevMove = h.last();
                 if (mov.fromIndex() == prevMove.fromIndex()
                         || (mov.fromIndex() == prevMove.toIndex()
                         && mov.toIndex() != prevMove.fromIndex())) {
@@ -269,8 +433,11 @@ class Board extends Observable {
             return;
         }
         if (jumpPossible()) {
+            JumpSearch jumps =
+                _whoseMove == WHITE ? new JumpSearch(moves, _white, _black)
+                : new JumpSearch(moves, _black, _white);
             for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getJumps(moves, k);
+                jumps.findFrom(k);
             }
         } else {
             for (int k = 0; k <= MAX_INDEX; k += 1) {
@@ -282,72 +449,107 @@ class Board extends Observable {
     /** Add all legal non-capturing moves from the position
      *  with linearized index K to MOVES. */
     private void getMoves(ArrayList<Move> moves, int k) {
-        char col0 = Move.col(k);
-        char row0 = Move.row(k);
-        for (int i = -1; i <= 1; i++) {
-            char row1 = Move.row(k + 5 * i);
-            for (int j = -1; j <= 1; j++) {
-                char col1 = Move.col(k + j);
-                if (Move.validSquare(col1, row1)) {
-                    Move mov = Move.move(col0, row0, col1, row1);
-                    if (legalMoveAI(mov)) {
-                        moves.add(mov);
-                    }
+        for (Move mov : Move.steps(k)) {
+            if (legalMoveAI(mov)) {
+                moves.add(mov);
+            }
+        }
+    }
+
+
+    /* Capture sequences are enumerated by a depth-first search that
+     * tracks the occupied squares and the opponent's pieces in scratch
+     * bit masks, leaving the board itself alone.  The legs of the
+     * sequence under consideration are kept on a stack of single jumps
+     * (from Move.jumps), and a Move is assembled, from its last leg back,
+     * only for each complete sequence.  Sequences by the same piece that
+     * end on the same square having captured the same pieces lead to the
+     * same position; only the first of these is reported. */
+
+    /** The state of a search for capture sequences. */
+    private static class JumpSearch {
+
+        /** A search that adds the sequences it finds to MOVES, for the
+         *  player whose pieces are on the squares in mask OWN, against
+         *  the pieces in mask OPP. */
+        JumpSearch(ArrayList<Move> moves, long own, long opp) {
+            _moves = moves;
+            _own = own;
+            _opp = opp;
+        }
+
+        /** Add the legal captures by the piece (if any) on the square
+         *  with linearized index K. */
+        void findFrom(int k) {
+            if ((_own & (1L << k)) != 0) {
+                _found = 0;
+                find(k, (_own | _opp) & ~(1L << k), _opp, 0, 0);
+            }
+        }
+
+        /** Add the capture sequences that continue the first DEPTH legs
+         *  on the stack, which have captured the pieces in CAPTURED and
+         *  left the piece on square K, where OCCUPIED is the mask of the
+         *  other occupied squares and OPP that of the remaining opposing
+         *  pieces. */
+        private void find(int k, long occupied, long opp, long captured,
+                          int depth) {
+            boolean extended = false;
+            for (Move leg : Move.jumps(k)) {
+                long to = 1L << leg.toIndex(), over = 1L << leg.jumpedIndex();
+                if ((occupied & to) == 0 && (opp & over) != 0) {
+                    extended = true;
+                    _legs[depth] = leg;
+                    find(leg.toIndex(), occupied & ~over, opp & ~over,
+                         captured | over, depth + 1);
                 }
             }
+            if (!extended && depth > 0) {
+                finish(k, captured, depth);
+            }
         }
-    }
-
-
-    /** Add all legal captures from the position with linearized index K
-     *  to MOVES. */
-    private void getJumps(ArrayList<Move> moves, int k) {
-        ArrayList<Move> jumps = getJumps(k);
-        for (Move mov: jumps) {
-
-            moves.add(mov);
-
-
-        }
-    }
-
-    /** Get all the multiple jumps.
-     *  @param k the from index of possible moves
-     *  @return */
-    private ArrayList<Move> getJumps(int k) {
-        ArrayList<Move> jumps = new ArrayList<>();
-        char col0 = Move.col(k);
-        char row0 = Move.row(k);
-        for (int i = -1; i <= 1; i++) {
-            char row1 = Move.row(k + 5 * 2 * i);
-            for (int j = -1; j <= 1; j++) {
-                char col1 = Move.col(k + 2 * j);
-                if (Move.validSquare(col1, row1)) {
-                    Move mov = Move.move(col0, row0, col1, row1);
-                    if (checkJumpAI(mov, true)) {
-
-                        makeMove(mov);
-                        _whoseMove = _whoseMove.opposite();
-                        ArrayList<Move> next = getJumps(Move.index(col1, row1));
-                        _whoseMove = _whoseMove.opposite();
-                        undo();
-
-
-                        if (next.isEmpty()) {
-                            jumps.add(mov);
-                        } else {
-                            for (Move nextMov: next) {
-                                jumps.add(Move.move(mov, nextMov));
-                            }
-                        }
 
-                    }
+        /** Add the sequence of the first DEPTH legs on the stack, which
+         *  ends on square K having captured the pieces in CAPTURED, unless
+         *  an equivalent sequence has already been added. */
+        private void finish(int k, long captured, int depth) {
+            long outcome = captured | ((long) k << (SIDE * SIDE));
+            for (int i = 0; i < _found; i += 1) {
+                if (_outcomes[i] == outcome) {
+                    return;
                 }
             }
+            if (_found == _outcomes.length) {
+                _outcomes = Arrays.copyOf(_outcomes, 2 * _found);
+            }
+            _outcomes[_found] = outcome;
+            _found += 1;
+            Move mov = _legs[depth - 1];
+            for (int i = depth - 2; i >= 0; i -= 1) {
+                Move leg = _legs[i];
+                mov = Move.move(leg.col0(), leg.row0(), leg.col1(),
+                                leg.row1(), mov);
+            }
+            _moves.add(mov);
         }
-        return jumps;
+
+        /** Where to add the sequences found. */
+        private final ArrayList<Move> _moves;
+        /** The squares of the moving and opposing players' pieces. */
+        private final long _own, _opp;
+        /** The legs of the sequence under consideration.  (Each leg
+         *  captures a piece, so there are fewer than SIDE * SIDE.) */
+        private final Move[] _legs = new Move[SIDE * SIDE];
+        /** The captured squares and final squares of the sequences added
+         *  so far for the current piece. */
+        private long[] _outcomes = new long[INITIAL_OUTCOMES];
+        /** Number of sequences added for the current piece. */
+        private int _found;
     }
 
+    /** Initial room for outcomes in a JumpSearch. */
+    private static final int INITIAL_OUTCOMES = 8;
+
     /** Return true iff MOV is a valid jump sequence on the current board.
      *  MOV must be a jump or null.  If ALLOWPARTIAL, allow jumps that
      *  could be continued and are valid as far as they go.  */
@@ -447,49 +649,59 @@ class Board extends Observable {
     /** Return true iff a jump is possible for a piece at position with
      *  linearized index K. */
     boolean jumpPossible(int k) {
-        char col0 = Move.col(k);
-        char row0 = Move.row(k);
-        for (int i = -1; i <= 1; i++) {
-            char row1 = Move.row(k + 5 * 2 * i);
-            for (int j = -1; j <= 1; j++) {
-                char col1 = Move.col(k + 2 * j);
-                if (Move.validSquare(col1, row1)) {
-                    Move mov = Move.move(col0, row0, col1, row1);
-                    if (checkJumpAI(mov, true)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return (capturers(_whoseMove) & (1L << k)) != 0;
     }
 
     /** Return true iff a jump is possible from the current board. */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
-                return true;
+        return capturers(_whoseMove) != 0;
+    }
+
+    /** Return the mask of the squares (bit K for linearized index K)
+     *  holding pieces of WHO that could capture if it were WHO's move.
+     *  Takes constant time. */
+    long capturers(PieceColor who) {
+        return who == WHITE ? _whiteCapturers : _blackCapturers;
+    }
+
+    /* The squares from which each player could capture are recomputed
+     * whenever the pieces change, with a few operations on bit masks per
+     * direction of jump: a piece on square K can jump in the direction
+     * whose index offset is D iff K is in JUMP_ORIGINS[D] (the jump lies
+     * along a line of the board), an opposing piece is on K + D, and
+     * K + 2D is empty.  This costs less than updating the squares near
+     * each changed square individually. */
+
+    /** Set _whiteCapturers and _blackCapturers for my current pieces. */
+    private void findCapturers() {
+        _whiteCapturers = capturers(_white, _black);
+        _blackCapturers = capturers(_black, _white);
+    }
+
+    /** Return the mask of the squares of pieces in mask OWN that could
+     *  capture a piece in mask OPP, the other pieces on the board. */
+    static long capturers(long own, long opp) {
+        long empty = ~(own | opp) & ALL_SQUARES;
+        long result = 0;
+        for (int i = 0; i < JUMP_OFFSETS.length; i += 1) {
+            int d = JUMP_OFFSETS[i];
+            long origins = JUMP_ORIGINS[i];
+            if (d > 0) {
+                result |= own & origins & (opp >>> d) & (empty >>> (2 * d));
+            } else {
+                result |= own & origins & (opp << -d) & (empty << (-2 * d));
             }
         }
-        return false;
+        return result;
     }
 
     /** Check if there is any possible move at k.
      *  @param k check if there are any move from the kth position
      *  @return  */
     boolean movePossible(int k) {
-        char col0 = Move.col(k);
-        char row0 = Move.row(k);
-        for (int i = -1; i <= 1; i++) {
-            char row1 = Move.row(k + 5 * i);
-            for (int j = -1; j <= 1; j++) {
-                char col1 = Move.col(k + j);
-                if (Move.validSquare(col1, row1)) {
-                    Move mov = Move.move(col0, row0, col1, row1);
-                    if (legalMoveAI(mov)) {
-                        return true;
-                    }
-                }
+        for (Move mov : Move.steps(k)) {
+            if (legalMoveAI(mov)) {
+                return true;
             }
         }
         return false;
@@ -530,20 +742,22 @@ class Board extends Observable {
 
     /** Make the Move MOV on this Board, assuming it is legal. */
     void makeMove(Move mov) {
-
-        moveList.add(mov);
+        int captured = 0;
         if (!mov.isJump()) {
             set(mov.col0(), mov.row0(), EMPTY);
             set(mov.col1(), mov.row1(), _whoseMove);
         } else {
-            while (mov != null) {
-                set(mov.col0(), mov.row0(), EMPTY);
-                set(mov.col1(), mov.row1(), _whoseMove);
-                set(mov.jumpedIndex(), EMPTY);
-                mov = mov.jumpTail();
+            for (Move m = mov; m != null; m = m.jumpTail()) {
+                set(m.col0(), m.row0(), EMPTY);
+                set(m.col1(), m.row1(), _whoseMove);
+                set(m.jumpedIndex(), EMPTY);
+                captured |= 1 << m.jumpedIndex();
             }
         }
+        _history = _history.add(mov, captured);
         _whoseMove = _whoseMove.opposite();
+        findCapturers();
+        _legalMoves = null;
         if (!isMove()) {
             _gameOver = true;
         }
@@ -555,32 +769,40 @@ class Board extends Observable {
 
     /** Undo the last move, if any. */
     void undo() {
-        Move mov = moveList.remove(moveList.size() - 1);
-        ArrayList<Move> moves = new ArrayList<>();
-        while (mov != null) {
-            moves.add(mov);
-            mov = mov.jumpTail();
+        undo(_history.last(), _history.captured());
+    }
+
+    /** Undo MOV, which must be the last move made on me, and which
+     *  captured the pieces on the squares in the mask CAPTURED (bit K for
+     *  linearized index K).  The move need not be in my history (which
+     *  'start' and the like clear). */
+    void undo(Move mov, int captured) {
+        PieceColor mover = _whoseMove.opposite();
+        Move last = mov;
+        while (last.jumpTail() != null) {
+            last = last.jumpTail();
         }
-        while (moves.size() > 0) {
-            undo(moves.remove(moves.size() - 1));
+        set(last.toIndex(), EMPTY);
+        set(mov.fromIndex(), mover);
+        for (int m = captured; m != 0; m &= m - 1) {
+            set(Integer.numberOfTrailingZeros(m), _whoseMove);
         }
-        _whoseMove = _whoseMove.opposite();
+        if (!_history.isEmpty() && _history.last() == mov) {
+            _history = _history.previous();
+        }
+        _whoseMove = mover;
         _gameOver = false;
+        findCapturers();
+        _legalMoves = null;
 
         setChanged();
         notifyObservers();
     }
 
-    /** Helper function. Undo the MOV. */
-    void undo(Move mov) {
-        if (!mov.isJump()) {
-            set(mov.col0(), mov.row0(), _whoseMove.opposite());
-            set(mov.col1(), mov.row1(), EMPTY);
-        } else {
-            set(mov.col0(), mov.row0(), _whoseMove.opposite());
-            set(mov.jumpedIndex(), _whoseMove);
-            set(mov.col1(), mov.row1(), EMPTY);
-        }
+    /** Return the moves that led to my position (since the last 'start',
+     *  'clear', or 'set'), most recent first. */
+    Position.History history() {
+        return _history;
     }
 
     @Override
@@ -638,23 +860,94 @@ class Board extends Observable {
     /** Player that is on move. */
     private PieceColor[] _board;
 
+    /** Bit masks of the squares holding white and black pieces. */
+    private long _white, _black;
+
+    /** My legal moves, or null if not yet needed since my position last
+     *  changed. */
+    private List<Move> _legalMoves;
+
+    /** The cache in which I look up my legal moves, or null. */
+    private LegalMoveCache _moveCache;
+
+    /** Bit masks of the squares holding white and black pieces that could
+     *  capture. */
+    private long _whiteCapturers, _blackCapturers;
+
+    /** The network evaluating my positions, or null. */
+    private Network _network;
+    /** The first-layer accumulator of _network for my position, or null
+     *  if _network is null. */
+    private short[] _accumulator;
+
+    /** Position of the black-piece mask within a key(). */
+    static final int KEY_BLACK_SHIFT = SIDE * SIDE;
+
+    /** The key() bit that indicates that black is to move. */
+    static final long KEY_BLACK_TO_MOVE = 1L << (2 * SIDE * SIDE);
+
+    /** Mask of all squares. */
+    private static final long ALL_SQUARES = (1L << (SIDE * SIDE)) - 1;
+
+    /** The index offsets of the directions of single jumps, and for each,
+     *  the mask of the squares from which a jump in that direction lies
+     *  along a line of the board. */
+    private static final int[] JUMP_OFFSETS;
+    /** See JUMP_OFFSETS. */
+    private static final long[] JUMP_ORIGINS;
+
+    static {
+        int[] offsets = new int[SIDE * SIDE];
+        long[] origins = new long[SIDE * SIDE];
+        int n = 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            for (Move mov : Move.jumps(k)) {
+                int d = mov.jumpedIndex() - k;
+                int i;
+                i = 0;
+                while (i < n && offsets[i] != d) {
+                    i += 1;
+                }
+                if (i == n) {
+                    offsets[n] = d;
+                    n += 1;
+                }
+                origins[i] |= 1L << k;
+            }
+        }
+        JUMP_OFFSETS = Arrays.copyOf(offsets, n);
+        JUMP_ORIGINS = Arrays.copyOf(origins, n);
+    }
+
+    /** Mask of the bits of one row in a key. */
+    private static final long ROW_MASK = (1 << SIDE) - 1;
+
+    /** REVERSED_ROWS[m] is the row mask M reflected left to right. */
+    private static final long[] REVERSED_ROWS = new long[1 << SIDE];
+
+    static {
+        for (int m = 0; m < REVERSED_ROWS.length; m += 1) {
+            for (int c = 0; c < SIDE; c += 1) {
+                if ((m & (1 << c)) != 0) {
+                    REVERSED_ROWS[m] |= 1L << (SIDE - 1 - c);
+                }
+            }
+        }
+    }
+
     /** Set true when game ends. */
     private boolean _gameOver;
 
     /** Convenience value giving values of pieces at each ordinal position. */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
-    /** One cannot create arrays of ArrayList<Move>, so we introduce
-     *  a specialized private list type for this purpose. */
-    private static class MoveList extends ArrayList<Move> {
-    }
-
-    /** List of all the previous moves you have done. */
-    private MoveList moveList = new MoveList();
+    /** All the previous moves you have done. */
+    private Position.History _history = Position.History.EMPTY;
 
-    /** Clean moveList. */
+    /** Forget the moves that led to my position. */
     public void resetMoveList() {
-        moveList.clear();
+        _history = Position.History.EMPTY;
+        _legalMoves = null;
     }
 
     /** Method to compare this board to another board. */
@@ -679,41 +972,4 @@ class Board extends Observable {
     public int hashCode() {
         return super.hashCode();
     }
-
-    /** A read-only view of a Board. */
-    private class ConstantBoard extends Board implements Observer {
-        /** A constant view of this Board. */
-        ConstantBoard() {
-            super(Board.this);
-            Board.this.addObserver(this);
-        }
-
-        @Override
-        void copy(Board b) {
-            assert false;
-        }
-
-        @Override
-        void clear() {
-            assert false;
-        }
-
-        @Override
-        void makeMove(Move move) {
-            assert false;
-        }
-
-        /** Undo the last move. */
-        @Override
-        void undo() {
-            assert false;
-        }
-
-        @Override
-        public void update(Observable obs, Object arg) {
-            super.copy((Board) obs);
-            setChanged();
-            notifyObservers(arg);
-        }
-    }
 }
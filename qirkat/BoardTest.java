@@ -2,7 +2,12 @@ package qirkat;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -85,4 +90,232 @@ public class BoardTest {
         assertEquals("second pass failed to reach same position", b2, b0);
     }
 
+    @Test
+    public void testSnapshot() {
+        Board b0 = new Board();
+        makeMoves(b0, GAME1);
+        Position p = b0.snapshot();
+        String pieces = b0.toString();
+        Board b1 = new Board(p);
+        assertEquals(b0, b1);
+        assertEquals(GAME1.length, p.history().size());
+        b0.undo();
+        b0.clear();
+        assertEquals("snapshot changed with board", pieces, p.toString());
+        assertEquals(GAME1.length, p.history().size());
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b1.undo();
+        }
+        assertEquals("copy failed to return to start", new Board(), b1);
+    }
+
+    @Test
+    public void testGameHistory() {
+        Board b0 = new Board();
+        Board start = new Board(b0);
+        GameHistory history = new GameHistory();
+        for (String mov : GAME1) {
+            b0.makeMove(Move.parseMove(mov));
+            history.add(b0);
+        }
+        Board end = new Board(b0);
+        b0.resetMoveList();
+        history.seek(b0, 0);
+        assertEquals("failed to return to start", start, b0);
+        history.seek(b0, GAME1.length);
+        assertEquals("failed to redo to end", end, b0);
+        history.seek(b0, 3);
+        Board third = new Board(start);
+        makeMoves(third, Arrays.copyOf(GAME1, 3));
+        assertEquals(third, b0);
+        history.add(Move.parseMove("c5-c4"), 0);
+        assertEquals(4, history.length());
+    }
+
+    @Test
+    public void testSymmetry() {
+        Board b0 = new Board();
+        for (String s : GAME1) {
+            long key = b0.key();
+            for (int sym = 0; sym <= (Board.MIRROR | Board.FLIP); sym += 1) {
+                long image = Board.transform(key, sym);
+                assertEquals(key, Board.transform(image, sym));
+                assertEquals(b0.canonicalKey(), Board.canonicalKey(image));
+                Board b1 = new Board();
+                b1.setPieces(Board.pieces(image), Board.whoseMove(image));
+                ArrayList<Move> images = new ArrayList<>();
+                for (Move mov : b0.getMoves()) {
+                    images.add(mov.image(sym));
+                    assertEquals(mov, mov.image(sym).image(sym));
+                }
+                ArrayList<Move> moves = b1.getMoves();
+                assertTrue(moves.containsAll(images)
+                           && images.containsAll(moves));
+            }
+            b0.makeMove(Move.parseMove(s));
+        }
+    }
+
+    @Test
+    public void testSymmetricEvaluation() {
+        Board b0 = new Board();
+        b0.useNetwork(Network.heuristic());
+        Random random = new Random(40);
+        for (int n = 0; n < 60 && !b0.gameOver(); n += 1) {
+            long key = b0.key();
+            for (int sym = 1; sym <= (Board.MIRROR | Board.FLIP); sym += 1) {
+                long image = Board.transform(key, sym);
+                Board b1 = new Board();
+                b1.setPieces(Board.pieces(image), Board.whoseMove(image));
+                b1.useNetwork(Network.heuristic());
+                int sign = (sym & Board.FLIP) != 0 ? -1 : 1;
+                assertEquals(sign * Search.staticScore(b0),
+                             Search.staticScore(b1));
+                assertEquals(sign * b0.networkValue(), b1.networkValue());
+            }
+            List<Move> moves = b0.getMoves();
+            b0.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testEquivalentJumps() {
+        Board b0 = new Board();
+        b0.setPieces("----- --b-- --bb- ---w- -----", PieceColor.WHITE);
+        ArrayList<Move> expected = new ArrayList<>();
+        expected.add(Move.parseMove("d4-b2-d2-d4"));
+        expected.add(Move.parseMove("d4-d2-b4"));
+        assertEquals("reversed cycle d4-d2-b2-d4 should be omitted",
+                     expected, b0.getMoves());
+    }
+
+    @Test
+    public void testCapturers() {
+        Board b0 = new Board();
+        b0.setPieces("----- --b-- --bb- ---w- -----", PieceColor.WHITE);
+        assertEquals(1L << Move.index('d', '4'),
+                     b0.capturers(PieceColor.WHITE));
+        assertEquals((1L << Move.index('c', '3'))
+                     | (1L << Move.index('d', '3')),
+                     b0.capturers(PieceColor.BLACK));
+        b0.makeMove(Move.parseMove("d4-d2-b4"));
+        assertEquals(0, b0.capturers(PieceColor.WHITE));
+        assertFalse(b0.jumpPossible());
+        b0.undo();
+        assertTrue(b0.jumpPossible('d', '4'));
+        assertFalse(b0.jumpPossible('c', '3'));
+    }
+
+    @Test
+    public void testLegalMoveCache() {
+        LegalMoveCache cache = new LegalMoveCache(2);
+        Board b0 = new Board();
+        assertEquals(b0.getMoves(), cache.legalMoves(b0));
+        cache.legalMoves(new Board(b0));
+        assertEquals(1, cache.hits());
+        b0.makeMove(Move.parseMove("c2-c3"));
+        cache.legalMoves(b0);
+        b0.makeMove(Move.parseMove("c4-c2"));
+        cache.legalMoves(b0);
+        b0.undo();
+        b0.undo();
+        cache.legalMoves(b0);
+        assertEquals("least recently used entry not discarded",
+                     4, cache.misses());
+        assertTrue(b0.legalMove(Move.parseMove("c2-c3")));
+        assertFalse(b0.legalMove(Move.parseMove("c2-c4")));
+        assertEquals(4, cache.misses());
+
+        b0.useMoveCache(cache);
+        assertTrue(b0.legalMove(Move.parseMove("c2-c3")));
+        assertEquals(2, cache.hits());
+        Board b1 = new Board(b0);
+        b1.makeMove(Move.parseMove("c2-c3"));
+        assertTrue(b1.legalMove(Move.parseMove("c4-c2")));
+        assertTrue(b0.listsMove(Move.parseMove("c2-c3")));
+        assertEquals("copy or search used the cache",
+                     6, cache.hits() + cache.misses());
+    }
+
+    @Test
+    public void testNetwork() throws IOException {
+        Board b0 = new Board();
+        b0.useNetwork(Network.heuristic());
+        Random random = new Random(61);
+        for (int n = 0; n < 40 && !b0.gameOver(); n += 1) {
+            int threat = b0.capturers(b0.whoseMove()) == 0 ? 0
+                : b0.whoseMove() == PieceColor.WHITE
+                ? Search.CAPTURE_THREAT_VALUE : -Search.CAPTURE_THREAT_VALUE;
+            assertEquals(Search.staticScore(b0) - threat, b0.networkValue());
+            List<Move> moves = b0.getMoves();
+            b0.makeMove(moves.get(random.nextInt(moves.size())));
+            if (n % 3 == 2) {
+                b0.undo();
+            }
+        }
+        Board b1 = new Board(b0);
+        b1.useNetwork(Network.heuristic());
+        assertEquals(b1.networkValue(), b0.networkValue());
+
+        File file = File.createTempFile("qirkat", ".nn");
+        try {
+            Network.heuristic().save(file.getPath());
+            b1.useNetwork(Network.load(file.getPath()));
+            assertEquals(b0.networkValue(), b1.networkValue());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLeafBatch() {
+        Board b0 = new Board();
+        Random random = new Random(46);
+        LeafBatch batch = new LeafBatch();
+        for (int n = 0; n < 60 && !b0.gameOver(); n += 1) {
+            List<Move> moves = b0.getMoves();
+            int[] scores = batch.score(b0, moves);
+            for (int i = 0; i < moves.size(); i += 1) {
+                Board b1 = new Board(b0);
+                b1.makeMove(moves.get(i));
+                assertEquals(Search.staticScore(b1), scores[i]);
+            }
+            b0.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testAnalyze() {
+        Board b0 = new Board();
+        Random random = new Random(50);
+        for (int n = 0; n < 12 && !b0.gameOver(); n += 1) {
+            List<Move> moves = b0.getMoves();
+            int sense = b0.whoseMove() == PieceColor.WHITE ? 1 : -1;
+            ArrayList<Integer> values = new ArrayList<>();
+            for (Move mov : moves) {
+                Board b1 = new Board(b0);
+                b1.makeMove(mov);
+                values.add(sense * new Search(new SearchState(12))
+                           .searchPosition(b1, 3));
+            }
+            values.sort(null);
+            Search search = new Search(new SearchState(12));
+            List<Search.Variation> best =
+                search.analyze(new Board(b0), 3, 4, Search.NO_DEADLINE);
+            assertEquals(Math.min(3, moves.size()), best.size());
+            for (int i = 0; i < best.size(); i += 1) {
+                Search.Variation v = best.get(i);
+                assertEquals((int) values.get(values.size() - 1 - i),
+                             sense * v.value());
+                assertEquals(v.move(), v.line().get(0));
+                Board b1 = new Board(b0);
+                for (Move mov : v.line()) {
+                    assertTrue(b1.legalMove(mov));
+                    b1.makeMove(mov);
+                }
+            }
+            b0.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
 }
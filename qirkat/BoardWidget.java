@@ -5,15 +5,26 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
+import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.Observer;
 import java.util.Observable;
+import javax.swing.Timer;
 
 import java.awt.event.MouseEvent;
 
 import static qirkat.Move.SIDE;
 import static qirkat.PieceColor.*;
 
-/** Widget for displaying a Qirkat board.
+/** Widget for displaying a Qirkat board.  The widget never reads the
+ *  Board it displays while painting: each change to the Board records
+ *  an immutable snapshot of the position (its key()) and marks the
+ *  display out of date, which costs the game's thread no more than that.
+ *  A timer on the event thread repaints at most once per frame, and only
+ *  when the display is out of date, so that a game played quickly (as
+ *  between two AIs) is shown at the frame rate rather than redrawn on
+ *  every move.  The blank board and its lines are drawn once into an
+ *  image, which each repaint copies before drawing the pieces.
  *  @author Henry Xu
  */
 class BoardWidget extends Pad implements Observer {
@@ -24,6 +35,8 @@ class BoardWidget extends Pad implements Observer {
     static final int SIDE = Move.SIDE;
     /** Radius of circle representing a piece. */
     static final int PIECE_RADIUS = 15;
+    /** Minimum interval between repaints (milliseconds). */
+    static final int FRAME_MILLIS = 16;
 
     /** Color of white pieces. */
     private static final Color WHITE_COLOR = Color.WHITE;
@@ -41,38 +54,94 @@ class BoardWidget extends Pad implements Observer {
     /** Stroke for outlining pieces. */
     private static final BasicStroke OUTLINE_STROKE = LINE_STROKE;
 
-    /** Model being displayed. */
-    private static Board _model;
+    /** Color of the lines showing hinted moves. */
+    private static final Color HINT_COLOR = new Color(30, 90, 220, 150);
+    /** Strokes for the lines showing hinted moves, best first (the last
+     *  is used for all the rest). */
+    private static final BasicStroke[] HINT_STROKES = {
+        new BasicStroke(8.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+        new BasicStroke(5.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+        new BasicStroke(3.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
+    };
 
     /** A new widget displaying MODEL. */
     BoardWidget(Board model) {
-        _model = model;
         setMouseHandler("click", this::readMove);
-        _model.addObserver(this);
         _dim = SQDIM * SIDE;
         setPreferredSize(_dim, _dim);
+        _position = model.snapshot();
+        model.addObserver(this);
+        _frameTimer = new Timer(FRAME_MILLIS, (e) -> nextFrame());
+        _frameTimer.start();
+    }
+
+    /** Return the position most recently displayed or about to be
+     *  displayed, as a Board.key(). */
+    long position() {
+        return _position.key();
+    }
+
+    /** Return the position most recently displayed or about to be
+     *  displayed, with the moves that led to it. */
+    Position snapshot() {
+        return _position;
     }
 
     /** Indicate that the squares indicated by MOV are the currently selected
      *  squares for a pending move. */
     void indicateMove(Move mov) {
         _selectedMove = mov;
-        repaint();
+        _stale = true;
     }
 
     /** Indicate the squares indicated by MOV are not the currently selected
      *  squares for a pending move any more. */
     void cancelMove() {
         _selectedMove = null;
-        repaint();
+        _stale = true;
+    }
+
+    /** Show MOVES, best first, as hints in the position whose key() is
+     *  POSITION, for as long as that position is displayed. */
+    void showHints(long position, List<Move> moves) {
+        _hints = new Hints(position, moves);
+        _stale = true;
+    }
+
+    /** Repaint if the display is out of date.  Called once per frame on
+     *  the event thread. */
+    private void nextFrame() {
+        if (_stale) {
+            repaint();
+        }
     }
 
     @Override
-    public synchronized void paintComponent(Graphics2D g) {
+    public void paintComponent(Graphics2D g) {
+        _stale = false;
+        long position = _position.key();
+        if (_background == null) {
+            _background = background();
+        }
+        g.drawImage(_background, 0, 0, null);
+        paintPieces(g, position);
+        Hints hints = _hints;
+        if (hints != null && hints.position == position) {
+            paintHints(g, hints.moves);
+        }
+    }
+
+    /** Return a new image of the empty board. */
+    private BufferedImage background() {
+        BufferedImage image =
+            new BufferedImage(_dim, _dim, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
         g.setColor(BLANK_COLOR);
         g.fillRect(0, 0, _dim, _dim);
+        g.setStroke(LINE_STROKE);
         paintLines(g);
-        paintPieces(g);
+        g.dispose();
+        return image;
     }
 
     /** Paint lines on the widget.
@@ -94,12 +163,11 @@ class BoardWidget extends Pad implements Observer {
         g.drawLine(mid, low, high, mid);
     }
 
-    /** Paint pieces on the widget.
-     *  @param g */
-    private void paintPieces(Graphics2D g) {
+    /** Paint the pieces of POSITION (a Board.key()) on G. */
+    private void paintPieces(Graphics2D g, long position) {
         int margin = SQDIM / 2 - PIECE_RADIUS;
         for (int i = SIDE * SIDE - 1; i >= 0; i--) {
-            PieceColor p = _model.get(i);
+            PieceColor p = Board.get(position, i);
             if (p == BLACK) {
                 g.setColor(BLACK_COLOR);
                 g.fillOval((i % SIDE) * SQDIM + margin,
@@ -117,9 +185,10 @@ class BoardWidget extends Pad implements Observer {
                         2 * 5, 2 * 5);
             }
         }
-        if (_selectedMove != null) {
-            int index = _selectedMove.fromIndex();
-            if (_model.get(index) == BLACK) {
+        Move selected = _selectedMove;
+        if (selected != null) {
+            int index = selected.fromIndex();
+            if (Board.get(position, index) == BLACK) {
                 g.setColor(BLACK_COLOR);
                 g.fillOval((index % SIDE) * SQDIM + margin - 5,
                         (SIDE - index / SIDE - 1) * SQDIM + margin - 5,
@@ -133,6 +202,30 @@ class BoardWidget extends Pad implements Observer {
 
         }
     }
+
+    /** Paint lines along the legs of MOVES on G, most prominently for
+     *  the first. */
+    private void paintHints(Graphics2D g, List<Move> moves) {
+        g.setColor(HINT_COLOR);
+        for (int i = moves.size() - 1; i >= 0; i -= 1) {
+            g.setStroke(HINT_STROKES[Math.min(i, HINT_STROKES.length - 1)]);
+            for (Move leg = moves.get(i); leg != null;
+                 leg = leg.jumpTail()) {
+                g.drawLine(center(leg.fromIndex() % SIDE),
+                           center(SIDE - leg.fromIndex() / SIDE - 1),
+                           center(leg.toIndex() % SIDE),
+                           center(SIDE - leg.toIndex() / SIDE - 1));
+            }
+        }
+        g.setStroke(LINE_STROKE);
+    }
+
+    /** Return the pixel coordinate of the center of the squares in
+     *  column or row K, counting from the left or top. */
+    private static int center(int k) {
+        return k * SQDIM + SQDIM / 2;
+    }
+
     /** Notify observers of mouse's current position from click event WHERE. */
     private void readMove(String unused, MouseEvent where) {
         int x = where.getX(), y = where.getY();
@@ -149,8 +242,9 @@ class BoardWidget extends Pad implements Observer {
     }
 
     @Override
-    public synchronized void update(Observable model, Object arg) {
-        repaint();
+    public void update(Observable model, Object arg) {
+        _position = ((Board) model).snapshot();
+        _stale = true;
     }
 
 
@@ -158,5 +252,31 @@ class BoardWidget extends Pad implements Observer {
     private int _dim;
 
     /** A partial Move indicating selected squares. */
-    private Move _selectedMove;
+    private volatile Move _selectedMove;
+
+    /** The position to display. */
+    private volatile Position _position;
+    /** True iff the display does not show the current _position and
+     *  _selectedMove. */
+    private volatile boolean _stale = true;
+    /** Moves to be shown as hints in a given position. */
+    private static class Hints {
+        /** Hints MOVES for the position whose key() is POSITION. */
+        Hints(long position, List<Move> moves) {
+            this.position = position;
+            this.moves = moves;
+        }
+
+        /** The position, as a Board.key(). */
+        private final long position;
+        /** The hinted moves, best first. */
+        private final List<Move> moves;
+    }
+
+    /** The current hints, or null if none. */
+    private volatile Hints _hints;
+    /** Image of the empty board, drawn on first use. */
+    private BufferedImage _background;
+    /** Fires once per frame. */
+    private final Timer _frameTimer;
 }
@@ -1,10 +1,5 @@
 package qirkat;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-
-import static qirkat.PieceColor.*;
-
 /** All things to do with parsing commands.
  *  @author Henry Xu
  */
@@ -13,42 +8,64 @@ class Command {
     /** Command types.  PIECEMOVE indicates a move of the form
      *  c0r0-c1r1.  ERROR indicates a parse error in the command.
      *  All other commands are upper-case versions of what the
-     *  programmer writes. */
+     *  programmer writes.  The syntax of each is given below in the
+     *  notation of java.util.regex; the groups capture the operands (if
+     *  any), and (?i) marks keywords whose case is ignored. */
     static enum Type {
         /* Start-up state only. */
-        AUTO("(?i)auto\\s+(white|black)"),
-        MANUAL("(?i)manual\\s+(white|black)"),
-        SEED("seed\\s+(\\d+)"),
+        /** (?i)auto\s+(white|black) */
+        AUTO,
+        /** (?i)manual\s+(white|black) */
+        MANUAL,
+        /** (?i)mcts\s+(white|black) */
+        MCTS,
+        /** seed\s+(\d+) */
+        SEED,
+        /** start */
         START,
-        SETBOARD("(?i)set\\s+(white|black)\\s+((?:[bw-]\\s*){25})"),
+        /** ponder\s+(on|off) */
+        PONDER,
+        /** (?i)set\s+(white|black)\s+((?:[bw-]\s*){25}) */
+        SETBOARD,
         /* Regular moves (set-up or play) */
-        PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
+        /** ([a-e][1-5](?:-[a-e][1-5])+) */
+        PIECEMOVE,
         /* Valid at any time. */
-        LOAD("load\\s+(\\S+)"),
-        QUIT, CLEAR, DUMP, HELP,
+        /** load\s+(\S+) */
+        LOAD,
+        /** record\s+(\S+) */
+        RECORD,
+        /** positions\s+(\S+)(?:\s+(\d+))? */
+        POSITIONS,
+        /** import\s+(\S+) */
+        IMPORT,
+        /** network\s+(\S+) */
+        NETWORK,
+        /** prune\s+(lmr|futility|razoring)\s+(on|off) */
+        PRUNE,
+        /** solve(?:\s+(\d+)(?:\s+(\d+))?)? */
+        SOLVE,
+        /** analyze(?:\s+(\d+))? */
+        ANALYZE,
+        /** budget\s+(\d+) */
+        BUDGET,
+        /** goto\s+(\d+) */
+        GOTO,
+        /** Commands consisting of their lower-case names alone. */
+        LOOKUP, STATS, UNDO, REDO, QUIT, CLEAR, DUMP, HELP,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
-        ERROR(".*"),
+        ERROR,
         /** End of input stream. */
         EOF;
 
-        /** PATTERN is a regular expression string giving the syntax of
-         *  a command of the given type.  It matches the entire command,
-         *  assuming no leading or trailing whitespace.  The groups in
-         *  the pattern capture the operands (if any). */
-        Type(String pattern) {
-            _pattern = Pattern.compile(pattern + "$");
+        /** Return my name in lower case. */
+        String lowerName() {
+            return _lowerName;
         }
 
-        /** A Type whose pattern is the lower-case version of its name. */
-        Type() {
-            _pattern = Pattern.compile(this.toString().toLowerCase() + "$");
-        }
-
-        /** The Pattern descrbing syntactically correct versions of this
-         *  type of command. */
-        private final Pattern _pattern;
-
+        /** My name in lower case. */
+        private final String _lowerName = toString().toLowerCase();
     }
 
     /** A new Command of type TYPE with OPERANDS as its operands. */
@@ -67,23 +84,321 @@ class Command {
         return _operands;
     }
 
+    /* Commands are parsed in a single left-to-right pass: the first word
+     * selects the only command type that could match, and the rest of the
+     * line is then checked against that type's syntax, with any failure
+     * yielding an ERROR command.  Moves, by far the most common commands
+     * when replaying games, are recognized from their first two
+     * characters, and involve no copying of the input. */
+
     /** Parse COMMAND, returning the command and its operands. */
     static Command parseCommand(String command) {
         if (command == null) {
             return new Command(Type.EOF);
         }
         command = command.trim();
-        for (Type type : Type.values()) {
-            Matcher mat = type._pattern.matcher(command);
-            if (mat.matches()) {
-                String[] operands = new String [mat.groupCount()];
-                for (int i = 1; i <= operands.length; i += 1) {
-                    operands[i - 1] = mat.group(i);
-                }
-                return new Command(type, operands);
+        if (Move.isMoveDenotation(command)) {
+            return new Command(Type.PIECEMOVE, command);
+        }
+        int k = wordEnd(command, 0);
+        Command result;
+        switch (k) {
+        case 3:
+            result = parseSet(command, k);
+            break;
+        case 4:
+            if (keyword(command, 0, "auto", true) == k) {
+                result = parseColor(Type.AUTO, command, k);
+            } else if (keyword(command, 0, "mcts", true) == k) {
+                result = parseColor(Type.MCTS, command, k);
+            } else if (command.startsWith("seed")) {
+                result = parseWithOperand(Type.SEED, command, k, true);
+            } else if (command.startsWith("load")) {
+                result = parseLoad(command, k);
+            } else if (command.startsWith("goto")) {
+                result = parseWithOperand(Type.GOTO, command, k, true);
+            } else {
+                result = parseWord(command, k, Type.QUIT, Type.DUMP,
+                                   Type.HELP, Type.UNDO, Type.REDO);
+            }
+            break;
+        case 5:
+            if (command.startsWith("prune")) {
+                result = parsePrune(command, k);
+            } else if (command.startsWith("solve")) {
+                result = parseSolve(command, k);
+            } else {
+                result = parseWord(command, k, Type.START, Type.CLEAR,
+                                   Type.STATS);
+            }
+            break;
+        case 6:
+            if (keyword(command, 0, "manual", true) == k) {
+                result = parseColor(Type.MANUAL, command, k);
+            } else if (command.startsWith("record")) {
+                result = parseWithOperand(Type.RECORD, command, k, false);
+            } else if (command.startsWith("import")) {
+                result = parseWithOperand(Type.IMPORT, command, k, false);
+            } else if (command.startsWith("budget")) {
+                result = parseWithOperand(Type.BUDGET, command, k, true);
+            } else if (command.startsWith("ponder")) {
+                result = parseOnOff(Type.PONDER, command, k);
+            } else {
+                result = parseWord(command, k, Type.LOOKUP);
+            }
+            break;
+        case 7:
+            if (command.startsWith("network")) {
+                result = parseWithOperand(Type.NETWORK, command, k, false);
+            } else if (command.startsWith("analyze")) {
+                result = k == command.length()
+                    ? new Command(Type.ANALYZE, new String[] { null })
+                    : parseWithOperand(Type.ANALYZE, command, k, true);
+            } else {
+                result = null;
+            }
+            break;
+        case 9:
+            result = parsePositions(command, k);
+            break;
+        default:
+            result = null;
+            break;
+        }
+        return result == null ? new Command(Type.ERROR) : result;
+    }
+
+    /** Return the command TYPE if COMMAND consists of just the lower-case
+     *  name of one of TYPES, K characters long, and otherwise null. */
+    private static Command parseWord(String command, int k, Type... types) {
+        if (k != command.length()) {
+            return null;
+        }
+        for (Type type : types) {
+            if (command.equals(type.lowerName())) {
+                return new Command(type);
+            }
+        }
+        return null;
+    }
+
+    /** Return a command of type TYPE whose single operand (white or black,
+     *  ignoring case) follows K in COMMAND, or null if COMMAND does
+     *  not have that form. */
+    private static Command parseColor(Type type, String command, int k) {
+        k = spaces(command, k);
+        int end = color(command, k);
+        if (end != command.length()) {
+            return null;
+        }
+        return new Command(type, command.substring(k));
+    }
+
+    /** Return a command of type TYPE whose single operand is the
+     *  non-blank word (digits if NUMERIC) following the keyword ending at
+     *  K in COMMAND, or null if COMMAND does not have that form. */
+    private static Command parseWithOperand(Type type, String command, int k,
+                                            boolean numeric) {
+        k = spaces(command, k);
+        int end = numeric ? digits(command, k) : wordEnd(command, k);
+        if (k < 0 || end <= k || end != command.length()) {
+            return null;
+        }
+        return new Command(type, command.substring(k));
+    }
+
+    /** Return a command of type TYPE whose single operand, on or off,
+     *  follows K in COMMAND, or null if COMMAND does not have that
+     *  form. */
+    private static Command parseOnOff(Type type, String command, int k) {
+        k = spaces(command, k);
+        int end = keyword(command, k, "on", false);
+        if (end < 0) {
+            end = keyword(command, k, "off", false);
+        }
+        if (end < 0 || end != command.length()) {
+            return null;
+        }
+        return new Command(type, command.substring(k));
+    }
+
+    /** Return the 'prune' command in COMMAND, whose first word ends at
+     *  K, or null if COMMAND is not one. */
+    private static Command parsePrune(String command, int k) {
+        k = spaces(command, k);
+        int end = wordEnd(command, k);
+        if (k < 0 || end <= k
+            || Search.Pruning.named(command.substring(k, end)) == null) {
+            return null;
+        }
+        Command onOff = parseOnOff(Type.PRUNE, command, end);
+        if (onOff == null) {
+            return null;
+        }
+        return new Command(Type.PRUNE, command.substring(k, end),
+                           onOff.operands()[0]);
+    }
+
+    /** Return the 'solve' command in COMMAND, whose first word ends at
+     *  K, or null if COMMAND is not one.  Its operands are the limits on
+     *  positions and milliseconds, each null if absent. */
+    private static Command parseSolve(String command, int k) {
+        String[] limits = new String[2];
+        for (int i = 0; i < limits.length && k < command.length(); i += 1) {
+            k = spaces(command, k);
+            int end = digits(command, k);
+            if (end < 0) {
+                return null;
+            }
+            limits[i] = command.substring(k, end);
+            k = end;
+        }
+        if (k != command.length()) {
+            return null;
+        }
+        return new Command(Type.SOLVE, limits);
+    }
+
+    /** Return the 'positions' command in COMMAND, whose first word ends
+     *  at K, or null if COMMAND is not one. */
+    private static Command parsePositions(String command, int k) {
+        if (!command.startsWith("positions")) {
+            return null;
+        }
+        k = spaces(command, k);
+        int end = wordEnd(command, k);
+        if (k < 0 || end <= k) {
+            return null;
+        }
+        String file = command.substring(k, end);
+        if (end == command.length()) {
+            return new Command(Type.POSITIONS, file, null);
+        }
+        k = spaces(command, end);
+        end = digits(command, k);
+        if (end <= k || end != command.length()) {
+            return null;
+        }
+        return new Command(Type.POSITIONS, file, command.substring(k));
+    }
+
+    /** Return the 'load' command in COMMAND, whose first word ends
+     *  at K, or null if COMMAND is not one. */
+    private static Command parseLoad(String command, int k) {
+        k = spaces(command, k);
+        int end = wordEnd(command, k);
+        if (k < 0 || end <= k) {
+            return null;
+        }
+        String file = command.substring(k, end);
+        if (end == command.length()) {
+            return new Command(Type.LOAD, file, null);
+        }
+        k = spaces(command, end);
+        if (keyword(command, k, "quiet", false) != command.length()) {
+            return null;
+        }
+        return new Command(Type.LOAD, file, "quiet");
+    }
+
+    /** Return the 'set' command in COMMAND, whose first word ends
+     *  at K, or null if COMMAND is not one. */
+    private static Command parseSet(String command, int k) {
+        if (keyword(command, 0, "set", true) != k) {
+            return null;
+        }
+        int k0 = spaces(command, k);
+        int k1 = color(command, k0);
+        int k2 = spaces(command, k1);
+        if (k2 < 0) {
+            return null;
+        }
+        int n;
+        n = 0;
+        for (int i = k2; i < command.length(); i += 1) {
+            char c = command.charAt(i);
+            if (c == '-' || c == 'b' || c == 'w' || c == 'B' || c == 'W') {
+                n += 1;
+            } else if (!isSpace(c) || i == k2) {
+                return null;
             }
         }
-        throw new Error("Internal failure: error command did not match.");
+        if (n != Move.SIDE * Move.SIDE) {
+            return null;
+        }
+        return new Command(Type.SETBOARD, command.substring(k0, k1),
+                           command.substring(k2));
+    }
+
+    /** Return true iff C is a whitespace character, as for \s in a regular
+     *  expression. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Return the index of the first whitespace character at or after K
+     *  in STR, or its length if none. */
+    private static int wordEnd(String str, int k) {
+        if (k < 0) {
+            return -1;
+        }
+        while (k < str.length() && !isSpace(str.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return the index in STR following one or more whitespace characters
+     *  starting at K, or -1 if there are none there. */
+    private static int spaces(String str, int k) {
+        if (k < 0 || k >= str.length() || !isSpace(str.charAt(k))) {
+            return -1;
+        }
+        while (k < str.length() && isSpace(str.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return the index in STR following a sequence of one or more decimal
+     *  digits starting at K, or -1 if there are none there. */
+    private static int digits(String str, int k) {
+        int k0 = k;
+        if (k < 0) {
+            return -1;
+        }
+        while (k < str.length() && '0' <= str.charAt(k)
+               && str.charAt(k) <= '9') {
+            k += 1;
+        }
+        return k == k0 ? -1 : k;
+    }
+
+    /** Return the index in STR following WORD, starting at K, or -1 if
+     *  WORD does not occur there.  Ignore (ASCII) case if IGNORECASE. */
+    private static int keyword(String str, int k, String word,
+                               boolean ignoreCase) {
+        if (k < 0 || k + word.length() > str.length()) {
+            return -1;
+        }
+        for (int i = 0; i < word.length(); i += 1) {
+            char c = str.charAt(k + i);
+            if (ignoreCase && 'A' <= c && c <= 'Z') {
+                c = (char) (c - 'A' + 'a');
+            }
+            if (c != word.charAt(i)) {
+                return -1;
+            }
+        }
+        return k + word.length();
+    }
+
+    /** Return the index in STR following the word white or black
+     *  (ignoring case) starting at K, or -1 if neither occurs there. */
+    private static int color(String str, int k) {
+        int end = keyword(str, k, "white", true);
+        return end >= 0 ? end : keyword(str, k, "black", true);
     }
 
     /** The command name. */
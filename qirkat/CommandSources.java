@@ -17,10 +17,7 @@ class CommandSources implements CommandSource {
             String line;
             line = _inputs.peek().getLine(prompt);
             if (line != null) {
-                if (line.indexOf('#') != -1) {
-                    line = line.substring(0, line.indexOf('#'));
-                }
-                line = line.trim();
+                line = clean(line);
                 if (line.length() > 0) {
                     return line;
                 }
@@ -31,6 +28,16 @@ class CommandSources implements CommandSource {
         return null;
     }
 
+    /** Return LINE with any comment (from '#' on) and leading and trailing
+     *  whitespace removed. */
+    static String clean(String line) {
+        int comment = line.indexOf('#');
+        if (comment != -1) {
+            line = line.substring(0, comment);
+        }
+        return line.trim();
+    }
+
     /** Make SOURCE the latest input source from which subsequent input
      *  will be read. */
     void addSource(CommandSource source) {
@@ -34,6 +34,9 @@ public class CommandTest {
         checkError("auto green");
         checkError("auto");
         checkError("auto red foo");
+        check("mcts white", MCTS, "white");
+        check("MCTS Black", MCTS, "Black");
+        checkError("mcts");
     }
 
     @Test public void testSEED() {
@@ -66,6 +69,71 @@ public class CommandTest {
         checkError("h3-g3");
         checkError("a0-a1");
         checkError("a7-a8");
+        check("a1-a3-c5", PIECEMOVE, "a1-a3-c5");
+        checkError("a1-a3-");
+    }
+
+    @Test public void testSETBOARD() {
+        check("set white w---w ----- ----- ----- bb---", SETBOARD,
+              "white", "w---w ----- ----- ----- bb---");
+        check("SET Black ----- ----- ----- ----- -----", SETBOARD, "Black",
+              "----- ----- ----- ----- -----");
+        checkError("set white w---w");
+        checkError("set green ----- ----- ----- ----- -----");
+    }
+
+    @Test public void testBUDGET() {
+        check("budget 250", BUDGET, "250");
+        check("stats", STATS);
+        checkError("budget");
+        checkError("budget -1");
+        check("network weights.nn", NETWORK, "weights.nn");
+        checkError("network");
+        check("prune lmr on", PRUNE, "lmr", "on");
+        check("prune  razoring   off", PRUNE, "razoring", "off");
+        checkError("prune nmp on");
+        checkError("prune futility");
+        check("solve", SOLVE, null, null);
+        check("solve 5000", SOLVE, "5000", null);
+        check("solve 5000  100", SOLVE, "5000", "100");
+        checkError("solve x");
+        checkError("solve 1 2 3");
+        check("analyze", ANALYZE, (String) null);
+        check("analyze 4", ANALYZE, "4");
+        checkError("analyze x");
+        checkError("analyze 1 2");
+        checkError("stats now");
+    }
+
+    @Test public void testHistory() {
+        check("undo", UNDO);
+        check("redo", REDO);
+        check("goto 12", GOTO, "12");
+        check("goto   0", GOTO, "0");
+        checkError("goto");
+        checkError("goto x");
+        checkError("undo 2");
+    }
+
+    @Test public void testPONDER() {
+        check("ponder on", PONDER, "on");
+        check("ponder   off", PONDER, "off");
+        checkError("ponder");
+        checkError("ponder onn");
+    }
+
+    @Test public void testLOAD() {
+        check("load foo.txt", LOAD, "foo.txt", null);
+        check("load foo.txt  quiet", LOAD, "foo.txt", "quiet");
+        checkError("load");
+        checkError("load foo.txt loud");
+    }
+
+    @Test public void testPOSITIONS() {
+        check("positions foo.pos", POSITIONS, "foo.pos", null);
+        check("positions foo.pos 1024", POSITIONS, "foo.pos", "1024");
+        checkError("positions");
+        checkError("positions foo.pos big");
     }
 
 }
@@ -0,0 +1,109 @@
+package qirkat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Measures the cost of evaluating positions with a Network, compared
+ *  with Search.staticScore, in the setting that matters: a fixed-depth
+ *  search of the same positions with each evaluator.  Reports the
+ *  positions searched per second with each and their ratio, and exits
+ *  with status 1 if the network more than halves the rate.
+ *  @author Henry Xu
+ */
+public class EvalBench {
+
+    /** Number of positions searched. */
+    private static final int POSITIONS = 24;
+    /** Depth of each search. */
+    private static final int DEPTH = 6;
+    /** Number of measured rounds, after one round of warm-up. */
+    private static final int ROUNDS = 3;
+    /** Least acceptable ratio of network to heuristic search rates. */
+    private static final double MIN_RATIO = 0.5;
+
+    /** Benchmark the network in file ARGS[0], or Network.heuristic() if
+     *  there are no ARGS.  With "--save FILE", instead write
+     *  Network.heuristic() to FILE, as a starting point for training. */
+    public static void main(String[] args) {
+        Network network;
+        try {
+            if (args.length == 2 && args[0].equals("--save")) {
+                Network.heuristic().save(args[1]);
+                return;
+            } else if (args.length == 1) {
+                network = Network.load(args[0]);
+            } else if (args.length == 0) {
+                network = Network.heuristic();
+            } else {
+                System.err.println("Usage: java qirkat.EvalBench "
+                                   + "[--save FILE | FILE]");
+                System.exit(1);
+                return;
+            }
+        } catch (IOException excp) {
+            System.err.printf("Network file error: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        List<Position> positions = positions();
+        double heuristic = 0, neural = 0;
+        for (int round = 0; round <= ROUNDS; round += 1) {
+            double h = rate(positions, null),
+                n = rate(positions, network);
+            if (round > 0) {
+                heuristic = Math.max(heuristic, h);
+                neural = Math.max(neural, n);
+            }
+        }
+        double ratio = neural / heuristic;
+        System.out.printf("%d hidden units; depth-%d searches of %d "
+                          + "positions%n", network.hidden(), DEPTH,
+                          positions.size());
+        System.out.printf("heuristic: %10.0f positions/sec%n", heuristic);
+        System.out.printf("network:   %10.0f positions/sec (%.2fx)%n",
+                          neural, ratio);
+        System.exit(ratio >= MIN_RATIO ? 0 : 1);
+    }
+
+    /** Return the positions searched: positions from the openings and
+     *  middle games of random games, always the same ones. */
+    private static List<Position> positions() {
+        Random random = new Random(45);
+        ArrayList<Position> result = new ArrayList<>();
+        while (result.size() < POSITIONS) {
+            Board board = new Board();
+            int plies = 4 + random.nextInt(24);
+            for (int i = 0; i < plies && !board.gameOver(); i += 1) {
+                List<Move> moves = board.getMoves();
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            if (!board.gameOver()) {
+                result.add(board.snapshot());
+            }
+        }
+        return result;
+    }
+
+    /** Return the rate (interior positions per second) of searches of
+     *  POSITIONS evaluating with NETWORK (the heuristic if null), each
+     *  with a new SearchState. */
+    private static double rate(List<Position> positions, Network network) {
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (Position position : positions) {
+            SearchState state = new SearchState(LOG_TABLE_SIZE);
+            state.setNetwork(network);
+            Search search = new Search(state);
+            search.findMove(new Board(position), DEPTH);
+            nodes += search.nodes();
+        }
+        return nodes * 1e9 / (System.nanoTime() - start);
+    }
+
+    /** Log base 2 of the size of the table of each search. */
+    private static final int LOG_TABLE_SIZE = 16;
+}
@@ -7,11 +7,15 @@ import java.util.Observable;
 import java.util.Observer;
 
 import java.io.Writer;
+import java.io.PipedReader;
+import java.io.PipedWriter;
 import java.io.PrintWriter;
 import java.io.InputStream;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static qirkat.PieceColor.*;
 
@@ -44,6 +48,28 @@ class GUI extends TopLevel implements Observer, Reporter {
 
     /** Minimum size of board in pixels. */
     private static final int MIN_SIZE = 300;
+    /** Number of moves shown by the "Hint" button. */
+    private static final int HINTS = 3;
+
+    /** Return a new Game that plays on BOARD and takes its commands from,
+     *  and reports to, a new display with TITLE as its window title, which
+     *  is shown.  Commands pass from the display to the game through a pipe
+     *  buffering BUFFERLEN characters.  (Main refers to this class only
+     *  through this method, so that text-only sessions never load it or
+     *  the Swing classes it uses.) */
+    static Game displayGame(String title, Board board, int bufferLen)
+        throws IOException {
+        PipedWriter writer = new PipedWriter();
+        GUI display = new GUI(title, board, writer);
+        Game game = new Game(board,
+                             new ReaderSource(new PipedReader(writer,
+                                                              bufferLen),
+                                              false),
+                             display);
+        display._game = game;
+        display.display(true);
+        return game;
+    }
 
     /** A new display observing MODEL, with TITLE as its window title.
      *  It uses OUTCOMMANDS to send commands to a game instance, using the
@@ -52,6 +78,7 @@ class GUI extends TopLevel implements Observer, Reporter {
         super(title, true);
         addMenuButton("Game->New", this::newGame);
         addMenuButton("Game->Start", this::startGame);
+        addMenuButton("Game->Hint", this::hint);
         addMenuButton("Game->Quit", this::quit);
         addMenuButton("Options->Seed...", this::setSeed);
         addMenuRadioButton("Options->Settings->Black AI", "Black",
@@ -89,6 +116,11 @@ class GUI extends TopLevel implements Observer, Reporter {
         notifyObservers();
     }
 
+    /** Execute the "Hint" button function. */
+    private synchronized void hint(String unused) {
+        _out.printf("analyze %d%n", HINTS);
+    }
+
     /** Execute the "Quit" button function. */
     private synchronized void quit(String unused) {
         _out.printf("quit%n");
@@ -154,37 +186,51 @@ class GUI extends TopLevel implements Observer, Reporter {
 
     @Override
     public void moveMsg(String format, Object... args) {
+        System.out.printf(format, args);
+        System.out.println();
+    }
+
+    @Override
+    public void analysisMsg(long position,
+                            List<Search.Variation> variations) {
+        ArrayList<Move> moves = new ArrayList<>();
+        for (Search.Variation v : variations) {
+            moves.add(v.move());
+        }
+        _widget.showHints(position, moves);
+    }
+
+    @Override
+    public void flush() {
     }
 
     @Override
     public void update(Observable obs, Object arg) {
         if (obs == _model) {
-            _widget.repaint();
             setChanged();
             notifyObservers();
         } else if (obs == _widget) {
             String sq = (String) arg;
             char c = sq.charAt(0);
             char r = sq.charAt(1);
+            Position position = _widget.snapshot();
             if (_selectedMove == null) {
-                if (_model.get(c, r) != _model.whoseMove()) {
+                if (position.get(c, r) != position.whoseMove()) {
                     return;
                 } else {
                     Move m = Move.move(c, r);
                     selectMove(m);
                 }
-                _widget.repaint();
             } else {
                 Move m = Move.move(_selectedMove.col0(),
                         _selectedMove.row0(), c, r);
-                if (_model.legalMove(m)) {
+                if (_game.legalMove(position, m)) {
                     movePiece(sq);
                 }
 
                 _selectedMove = null;
                 _widget.cancelMove();
             }
-            _widget.repaint();
             setChanged();
             notifyObservers();
         }
@@ -197,7 +243,6 @@ class GUI extends TopLevel implements Observer, Reporter {
         Move m = Move.move(_selectedMove.col0(), _selectedMove.row0(), c, r);
         _out.printf("" + _selectedMove.col0() + _selectedMove.row0()
                 + "-" + c + r + "%n");
-        _widget.repaint();
         setChanged();
         notifyObservers();
     }
@@ -216,6 +261,10 @@ class GUI extends TopLevel implements Observer, Reporter {
     private BoardWidget _widget;
     /** The model of the game. */
     private Board _model;
+    /** The game played on _model, which checks the moves clicked.  Clicks
+     *  are interpreted against the position my widget displays rather
+     *  than against _model, which the game's thread may be changing. */
+    private Game _game;
     /** Output sink for sending commands to a game. */
     private PrintWriter _out;
     /** Move selected by clicking. */
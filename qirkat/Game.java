@@ -8,8 +8,12 @@ import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 import static qirkat.PieceColor.*;
@@ -22,21 +26,34 @@ import static qirkat.GameException.error;
  */
 class Game {
 
-    /** States of play. */
+    /** States of play.  FINISHED indicates that the session has ended
+     *  (after a 'quit' command or end of input). */
     static enum State {
-        SETUP, PLAYING;
+        SETUP, PLAYING, FINISHED;
     }
 
     /** A new Game, using BOARD to play on, reading initially from
      *  BASESOURCE and using REPORTER for error and informational messages. */
     Game(Board board, CommandSource baseSource, Reporter reporter) {
+        this(board, baseSource, reporter, new SearchState(), null);
+    }
+
+    /** A new Game, using BOARD to play on, reading initially from
+     *  BASESOURCE and using REPORTER for error and informational messages.
+     *  Its AIs use and add to SEARCHSTATE, and perform their searches
+     *  on SCHEDULER, or on the thread calling process if SCHEDULER is
+     *  null. */
+    Game(Board board, CommandSource baseSource, Reporter reporter,
+         SearchState searchState, SearchScheduler scheduler) {
         _inputs.addSource(baseSource);
         _board = board;
-        _constBoard = _board.constantView();
+        _board.useMoveCache(_moveCache);
         _reporter = reporter;
+        _searchState = searchState;
+        _scheduler = scheduler;
     }
 
-    /** Run a session of Qirkat gaming. */
+    /** Run a session of Qirkat gaming, returning when it is finished. */
     void process() {
         Player white, black;
 
@@ -47,19 +64,29 @@ class Game {
             while (_state == SETUP) {
                 doCommand();
             }
+            if (_state == FINISHED) {
+                break;
+            }
 
+            _seed = _randoms.nextLong();
+            _randoms.setSeed(_seed);
             if (_whiteIsManual) {
                 white = new Manual(this, WHITE);
+            } else if (_whiteUsesMcts) {
+                white = new MCTS(this, WHITE);
             } else {
                 white = new AI(this, WHITE);
             }
             if (_blackIsManual) {
                 black = new Manual(this, BLACK);
+            } else if (_blackUsesMcts) {
+                black = new MCTS(this, BLACK);
             } else {
                 black = new AI(this, BLACK);
             }
+            recordStart();
 
-            while (_state != SETUP && !_board.gameOver()) {
+            while (_state == PLAYING && !_board.gameOver()) {
                 Move move;
                 if (_board.whoseMove() == WHITE) {
                     move = white.myMove();
@@ -69,20 +96,32 @@ class Game {
 
                 if (_state == PLAYING) {
                     _board.makeMove(move);
+                    _history.add(_board);
+                    recordMove(move);
                 }
             }
 
+            white.endGame();
+            black.endGame();
             if (_state == PLAYING) {
                 reportWinner();
+                recordEnd(_board.whoseMove().opposite());
+            } else {
+                recordEnd(EMPTY);
+            }
+            if (_state == PLAYING) {
+                _state = SETUP;
             }
-            _state = SETUP;
         }
 
+        closeRecorder();
+        closePositions();
+        _reporter.flush();
     }
 
-    /** Return a read-only view of my game board. */
-    Board board() {
-        return _constBoard;
+    /** Return an immutable snapshot of my game board. */
+    Position board() {
+        return _board.snapshot();
     }
 
     /** Perform the next command from our input source. */
@@ -118,6 +157,34 @@ class Game {
         return null;
     }
 
+    /** Return the search state shared by the AI players of this game. */
+    SearchState searchState() {
+        return _searchState;
+    }
+
+    /** Return the scheduler on which AI players should search, or null if
+     *  they should search on their own thread. */
+    SearchScheduler scheduler() {
+        return _scheduler;
+    }
+
+    /** Return the time an AI may take to choose a move (milliseconds), or
+     *  0 if unlimited. */
+    long searchBudget() {
+        return _searchBudget;
+    }
+
+    /** Return true iff the player of color WHO is manual. */
+    boolean isManual(PieceColor who) {
+        return who == WHITE ? _whiteIsManual : _blackIsManual;
+    }
+
+    /** Return true iff AI players should search on their opponents'
+     *  time. */
+    boolean pondering() {
+        return _pondering;
+    }
+
     /** Return random integer between 0 (inclusive) and MAX>0 (exclusive). */
     int nextRandom(int max) {
         return _randoms.nextInt(max);
@@ -139,13 +206,25 @@ class Game {
 
     /** Perform the command 'auto OPERANDS[0]'. */
     void doAuto(String[] operands) {
+        _state = SETUP;
+        if (operands[0].toLowerCase().equals("white")) {
+            _whiteIsManual = _whiteUsesMcts = false;
+        } else {
+            _blackIsManual = _blackUsesMcts = false;
+        }
+
+    }
+
+    /** Perform the command 'mcts OPERANDS[0]'. */
+    void doMcts(String[] operands) {
         _state = SETUP;
         if (operands[0].toLowerCase().equals("white")) {
             _whiteIsManual = false;
+            _whiteUsesMcts = true;
         } else {
             _blackIsManual = false;
+            _blackUsesMcts = true;
         }
-
     }
 
     /** Perform a 'help' command. */
@@ -163,7 +242,7 @@ class Game {
                     if (line == null) {
                         break;
                     }
-                    System.out.println(line);
+                    _reporter.moveMsg("%s", line);
                 }
                 r.close();
             } catch (IOException e) {
@@ -172,21 +251,51 @@ class Game {
         }
     }
 
-    /** Perform the command 'load OPERANDS[0]'. */
+    /** Perform the command 'load OPERANDS[0] [quiet]', executing the
+     *  commands in file OPERANDS[0].  Erroneous commands are reported
+     *  (up to a limit) and skipped.  If OPERANDS[1] is present ('quiet'),
+     *  suppress the output of 'dump' commands in the file, report progress
+     *  periodically, and summarize the results at the end. */
     void doLoad(String[] operands) {
-        try {
-            FileReader reader = new FileReader(operands[0]);
-            BufferedReader commands = new BufferedReader(reader);
-            String s = commands.readLine();
-            while (s != null) {
-                Command cmnd =
-                        Command.parseCommand(s);
-                _commands.get(cmnd.commandType()).accept(cmnd.operands());
-                s = commands.readLine();
+        checkLocal();
+        String name = operands[0];
+        boolean wasQuiet = _quiet;
+        long errors;
+        errors = 0;
+        _quiet = _quiet || operands[1] != null;
+        try (ScriptSource script = new ScriptSource(name)) {
+            long lines;
+            for (lines = 0; _state != FINISHED; lines += 1) {
+                String line = script.nextLine();
+                if (line == null) {
+                    break;
+                }
+                try {
+                    Command cmnd = Command.parseCommand(line);
+                    _commands.get(cmnd.commandType()).accept(cmnd.operands());
+                } catch (GameException | IllegalArgumentException excp) {
+                    errors += 1;
+                    if (errors <= MAX_LOAD_ERRORS) {
+                        _reporter.errMsg("%s:%d: %s", name,
+                                         script.lineNumber(),
+                                         excp.getMessage());
+                    }
+                }
+                if (_quiet && lines % LOAD_PROGRESS_INTERVAL == 0
+                    && lines > 0) {
+                    _reporter.moveMsg("%s: %d%% (%d commands)", name,
+                                      100 * script.position()
+                                      / Math.max(1, script.size()), lines);
+                }
+            }
+            if (_quiet || errors > 0) {
+                _reporter.moveMsg("%s: %d commands, %d errors.", name,
+                                  lines, errors);
             }
-
         } catch (IOException e) {
-            throw error("Cannot open file %s", operands[0]);
+            throw error("Cannot open file %s", name);
+        } finally {
+            _quiet = wasQuiet;
         }
     }
 
@@ -195,39 +304,362 @@ class Game {
         _state = SETUP;
         if (operands[0].toLowerCase().equals("white")) {
             _whiteIsManual = true;
+            _whiteUsesMcts = false;
         } else {
             _blackIsManual = true;
+            _blackUsesMcts = false;
         }
 
     }
 
-    /** Exit the program. */
+    /** Perform the command 'record OPERANDS[0]'. */
+    void doRecord(String[] operands) {
+        checkLocal();
+        closeRecorder();
+        try {
+            _recorder = new GameRecordWriter(operands[0]);
+        } catch (IOException e) {
+            throw error("Cannot open file %s", operands[0]);
+        }
+    }
+
+    /** Perform the command 'positions OPERANDS[0] [OPERANDS[1]]', opening
+     *  the position store in the file named OPERANDS[0], which is created
+     *  with room for OPERANDS[1] positions, if present, when it does not
+     *  exist. */
+    void doPositions(String[] operands) {
+        checkLocal();
+        closePositions();
+        long capacity = PositionStore.DEFAULT_CAPACITY;
+        if (operands[1] != null) {
+            try {
+                capacity = Long.parseLong(operands[1]);
+            } catch (NumberFormatException e) {
+                throw error("Bad position store size");
+            }
+        }
+        try {
+            _positions = new PositionStore(operands[0], capacity);
+        } catch (IOException e) {
+            throw error("Cannot open position store %s: %s", operands[0],
+                        e.getMessage());
+        }
+    }
+
+    /** Perform the command 'import OPERANDS[0]', adding the positions of
+     *  the games recorded in file OPERANDS[0] to the position store. */
+    void doImport(String[] operands) {
+        checkLocal();
+        if (_positions == null) {
+            throw error("No position store open");
+        }
+        try {
+            long games = _positions.importGames(operands[0]);
+            _positions.flush();
+            _reporter.moveMsg("Imported %d games; %d positions stored.",
+                              games, _positions.size());
+        } catch (NoSuchFileException e) {
+            throw error("Cannot open file %s", operands[0]);
+        } catch (IOException e) {
+            throw error("Cannot import %s: %s", operands[0], e.getMessage());
+        }
+    }
+
+    /** Perform the command 'lookup', reporting what the position store
+     *  records about the current position. */
+    void doLookup(String[] unused) {
+        if (_positions == null) {
+            throw error("No position store open");
+        }
+        PositionStore.Entry entry = _positions.lookup(_board.key());
+        if (entry == null) {
+            _reporter.moveMsg("Position not found.");
+        } else if (entry.move() == null) {
+            _reporter.moveMsg("Position occurred in %d games: "
+                              + "white won %d, black won %d.",
+                              entry.games(), entry.wins(WHITE),
+                              entry.wins(BLACK));
+        } else {
+            _reporter.moveMsg("Position occurred in %d games: "
+                              + "white won %d, black won %d; played %s.",
+                              entry.games(), entry.wins(WHITE),
+                              entry.wins(BLACK), entry.move());
+        }
+    }
+
+    /** End the session, abandoning any current game. */
     void doQuit(String[] unused) {
-        Main.reportTotalTimes();
-        System.exit(0);
+        _state = FINISHED;
+    }
+
+    /** Perform the command 'ponder OPERANDS[0]' (on or off).  Pondering
+     *  is not available when searches are scheduled on a shared pool,
+     *  since each pondering AI occupies a thread of its own. */
+    void doPonder(String[] operands) {
+        boolean on = operands[0].equals("on");
+        if (on && _scheduler != null) {
+            throw error("Pondering is not available on this server");
+        }
+        _pondering = on;
+    }
+
+    /** Perform the command 'prune OPERANDS[0] OPERANDS[1]', letting AI
+     *  searches use the selective-search technique OPERANDS[0] iff
+     *  OPERANDS[1] is "on". */
+    void doPrune(String[] operands) {
+        _searchState.setPruning(Search.Pruning.named(operands[0]),
+                                operands[1].equals("on"));
+    }
+
+    /** Perform the command 'solve OPERANDS[0] OPERANDS[1]', proving the
+     *  current position won or lost for the player to move, if possible,
+     *  searching at most OPERANDS[0] positions (Solver.DEFAULT_NODES if
+     *  null) and for at most OPERANDS[1] milliseconds (no limit if
+     *  null), as a job (see perform). */
+    void doSolve(String[] operands) {
+        long nodes = Solver.DEFAULT_NODES;
+        long budget = 0;
+        long start = System.nanoTime();
+        try {
+            if (operands[0] != null) {
+                nodes = Long.parseLong(operands[0]);
+            }
+            if (operands[1] != null) {
+                budget = Long.parseLong(operands[1]);
+            }
+        } catch (NumberFormatException e) {
+            throw error("Bad solver limit");
+        }
+        Solver solver =
+            new Solver(_scheduler == null ? Solver.DEFAULT_LOG_SIZE
+                       : SHARED_SOLVER_LOG_SIZE);
+        Board board = new Board(_board);
+        long maxNodes = nodes;
+        Solver.Result result =
+            perform(new SearchScheduler.Job<Solver.Result>() {
+                @Override
+                public Solver.Result run(long deadline) {
+                    return solver.solve(board, maxNodes, deadline);
+                }
+
+                @Override
+                public void stop() {
+                    solver.stop();
+                }
+
+                @Override
+                public boolean expired() {
+                    return solver.expired();
+                }
+            }, budget);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        PieceColor who = _board.whoseMove();
+        if (result == Solver.Result.UNKNOWN) {
+            _reporter.moveMsg("Not solved in %d positions (%d ms).",
+                              solver.nodes(), millis);
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        for (Move mov : solver.line()) {
+            line.append(" ").append(mov);
+        }
+        _reporter.moveMsg("%s wins (proved in %d positions, %d ms):%s",
+                          result == Solver.Result.WIN ? who
+                          : who.opposite(),
+                          solver.nodes(), millis, line);
+    }
+
+    /** Perform the command 'analyze OPERANDS[0]', reporting the best
+     *  OPERANDS[0] (DEFAULT_VARIATIONS if null) moves for the player to
+     *  move, found as an AI would search for its move (and as a job; see
+     *  perform), with their values and principal variations. */
+    void doAnalyze(String[] operands) {
+        int k = DEFAULT_VARIATIONS;
+        try {
+            if (operands[0] != null) {
+                k = Integer.parseInt(operands[0]);
+            }
+        } catch (NumberFormatException e) {
+            throw error("Bad number of moves");
+        }
+        if (k <= 0) {
+            throw error("Bad number of moves");
+        }
+        if (_board.gameOver()) {
+            throw error("No moves to analyze");
+        }
+        Search search = new Search(_searchState);
+        Board board = new Board(_board);
+        int variationCount = k;
+        List<Search.Variation> variations =
+            perform(new SearchScheduler.Job<List<Search.Variation>>() {
+                @Override
+                public List<Search.Variation> run(long deadline) {
+                    return search.analyze(board, variationCount,
+                                          AI.MAX_DEPTH, deadline);
+                }
+
+                @Override
+                public void stop() {
+                    search.stop();
+                }
+
+                @Override
+                public boolean expired() {
+                    return search.expired();
+                }
+            }, _searchBudget);
+        _reporter.moveMsg("Best moves for %s (depth %d):",
+                          _board.whoseMove(), search.depthReached());
+        for (int i = 0; i < variations.size(); i += 1) {
+            StringBuilder line = new StringBuilder();
+            for (Move mov : variations.get(i).line()) {
+                line.append(" ").append(mov);
+            }
+            _reporter.moveMsg("%d. %s %d:%s", i + 1,
+                              variations.get(i).move(),
+                              variations.get(i).value(), line);
+        }
+        _reporter.analysisMsg(_board.key(), variations);
+    }
+
+    /** Return the result of JOB, given a budget of BUDGET milliseconds
+     *  (0 for none).  If I have a scheduler, JOB waits its turn there at
+     *  BATCH priority, with its budget capped at MAX_SHARED_BUDGET, so
+     *  that it shares the scheduler's threads fairly with other sessions'
+     *  work; otherwise, it runs on this thread. */
+    private <T> T perform(SearchScheduler.Job<T> job, long budget) {
+        if (_scheduler == null) {
+            return job.run(budget <= 0 ? Search.NO_DEADLINE
+                           : System.nanoTime() + budget * 1_000_000);
+        }
+        if (budget <= 0 || budget > MAX_SHARED_BUDGET) {
+            budget = MAX_SHARED_BUDGET;
+        }
+        Future<T> task =
+            _scheduler.submit(job, budget, SearchScheduler.Priority.BATCH);
+        while (true) {
+            try {
+                return task.get();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+    }
+
+    /** Perform the command 'budget OPERANDS[0]', limiting AI searches to
+     *  OPERANDS[0] milliseconds per move (0 for no limit). */
+    void doBudget(String[] operands) {
+        try {
+            _searchBudget = Long.parseLong(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("Bad time budget");
+        }
+    }
+
+    /** Perform the command 'network OPERANDS[0]': let AI searches
+     *  evaluate positions with the Network in file OPERANDS[0], or with
+     *  the built-in evaluation if OPERANDS[0] is "off". */
+    void doNetwork(String[] operands) {
+        if (operands[0].equals("off")) {
+            _searchState.setNetwork(null);
+            return;
+        }
+        checkLocal();
+        try {
+            _searchState.setNetwork(Network.load(operands[0]));
+        } catch (IOException e) {
+            throw error("Cannot load network %s: %s", operands[0],
+                        e.getMessage());
+        }
+    }
+
+    /** Throw an error if I am a session of a GameServer (the only kind
+     *  of Game with a scheduler), whose commands come from remote clients
+     *  and so may not read or write files on this host. */
+    private void checkLocal() {
+        if (_scheduler != null) {
+            throw error("File commands are not available on this server");
+        }
+    }
+
+    /** Perform the command 'stats', reporting the state of the search
+     *  scheduler. */
+    void doStats(String[] unused) {
+        if (_scheduler == null) {
+            throw error("No search scheduler");
+        }
+        _reporter.moveMsg("%s", _scheduler.statistics());
     }
 
     /** Perform the command 'start'. */
     void doStart(String[] unused) {
         _state = PLAYING;
         _board.resetMoveList();
+        _history.clear();
     }
 
     /** Perform the move OPERANDS[0]. */
     void doMove(String[] operands) {
-        Move mov = Move.parseMove(operands[0]);
-        if (_board.legalMove(mov)) {
-            _board.makeMove(Move.parseMove(operands[0]));
+        Move mov = Move.moveOf(operands[0]);
+        if (mov != null && _board.legalMove(mov)) {
+            _board.makeMove(mov);
+            _history.add(_board);
+        }
+    }
+
+    /** Perform the command 'undo', taking back the last move made and
+     *  returning to set-up state. */
+    void doUndo(String[] unused) {
+        if (_history.ply() == 0) {
+            throw error("No move to undo");
+        }
+        seek(_history.ply() - 1);
+    }
+
+    /** Perform the command 'redo', making the last move taken back and
+     *  returning to set-up state. */
+    void doRedo(String[] unused) {
+        if (_history.ply() == _history.length()) {
+            throw error("No move to redo");
+        }
+        seek(_history.ply() + 1);
+    }
 
+    /** Perform the command 'goto OPERANDS[0]', going to the position
+     *  after the first OPERANDS[0] moves of the game (as of the last
+     *  'clear' or 'set'), and returning to set-up state. */
+    void doGoto(String[] operands) {
+        int ply;
+        try {
+            ply = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            ply = -1;
+        }
+        if (ply < 0 || ply > _history.length()) {
+            throw error("No move %s (game has %d moves)", operands[0],
+                        _history.length());
         }
+        seek(ply);
+    }
+
+    /** Go to the position after PLY moves of the game, in set-up
+     *  state. */
+    private void seek(int ply) {
+        _state = SETUP;
+        _history.seek(_board, ply);
     }
 
     /** Perform the command 'clear'. */
     void doClear(String[] unused) {
         _state = SETUP;
         _board.clear();
+        _history.clear();
         _blackIsManual = false;
         _whiteIsManual = true;
+        _whiteUsesMcts = _blackUsesMcts = false;
 
     }
 
@@ -242,15 +674,33 @@ class Game {
         }
         _board.setPieces(operands[1], v);
         _board.resetMoveList();
+        _history.clear();
 
     }
 
     /** Perform the command 'dump'. */
     void doDump(String[] unused) {
-        System.out.println("===");
-        System.out.println(_board);
-        System.out.println("===");
+        if (_quiet) {
+            return;
+        }
+        _reporter.moveMsg("===%n%s%n===", _board);
+
+    }
 
+    /** Return true iff MOV is legal in my current position, as checked by
+     *  my Board against my LegalMoveCache.  Called from the game's
+     *  thread. */
+    boolean legalMove(Move mov) {
+        return _board.legalMove(mov);
+    }
+
+    /** Return true iff MOV is legal in POSITION, as checked against my
+     *  LegalMoveCache.  May be called from any thread, such as a
+     *  display's, while the game's thread changes my Board. */
+    boolean legalMove(Position position, Move mov) {
+        Board board = new Board(position);
+        board.useMoveCache(_moveCache);
+        return board.legalMove(mov);
     }
 
     /** Execute 'seed OPERANDS[0]' command, where the operand is a string
@@ -258,10 +708,11 @@ class Game {
      *  too large. */
     void doSeed(String[] operands) {
         try {
-            _randoms.setSeed(Long.parseLong(operands[0]));
+            _seed = Long.parseLong(operands[0]);
         } catch (NumberFormatException e) {
-            _randoms.setSeed(Long.MAX_VALUE);
+            _seed = Long.MAX_VALUE;
         }
+        _randoms.setSeed(_seed);
     }
 
     /** Execute the artificial 'error' command. */
@@ -280,6 +731,85 @@ class Game {
         _reporter.outcomeMsg(msg);
     }
 
+    /** If recording, start recording a game from the current position. */
+    private void recordStart() {
+        if (_recorder != null) {
+            try {
+                _recorder.startGame(_board, _seed);
+            } catch (IOException e) {
+                recordFailed();
+            }
+        }
+    }
+
+    /** If recording, record MOV as the next move of the current game. */
+    private void recordMove(Move mov) {
+        if (_recorder != null) {
+            try {
+                _recorder.recordMove(mov);
+            } catch (IOException e) {
+                recordFailed();
+            }
+        }
+    }
+
+    /** If recording, end the current game, which was won by WINNER (EMPTY
+     *  if it was abandoned). */
+    private void recordEnd(PieceColor winner) {
+        if (_recorder != null) {
+            try {
+                _recorder.endGame(winner);
+            } catch (IOException e) {
+                recordFailed();
+            }
+        }
+    }
+
+    /** Report a failure to write the game record and stop recording. */
+    private void recordFailed() {
+        _reporter.errMsg("Error writing game record; recording stopped");
+        closeRecorder();
+    }
+
+    /** Close the position store, if open. */
+    private void closePositions() {
+        if (_positions != null) {
+            try {
+                _positions.close();
+            } catch (IOException e) {
+                /* Ignore IOException */
+            }
+            _positions = null;
+        }
+    }
+
+    /** Stop recording games, if we are. */
+    private void closeRecorder() {
+        if (_recorder != null) {
+            try {
+                _recorder.close();
+            } catch (IOException e) {
+                /* Ignore IOException */
+            }
+            _recorder = null;
+        }
+    }
+
+    /** Maximum number of erroneous commands in a loaded file that are
+     *  reported individually. */
+    private static final int MAX_LOAD_ERRORS = 10;
+    /** Default number of moves reported by 'analyze'. */
+    private static final int DEFAULT_VARIATIONS = 3;
+    /** Longest time that a job run by perform may take on a shared
+     *  scheduler (milliseconds). */
+    private static final long MAX_SHARED_BUDGET = 10_000;
+    /** Log base 2 of the size of the table of a Solver run on a shared
+     *  scheduler (about 1.8MB). */
+    private static final int SHARED_SOLVER_LOG_SIZE = 16;
+
+    /** Number of commands between progress reports from a quiet load. */
+    private static final long LOAD_PROGRESS_INTERVAL = 1 << 20;
+
     /** Mapping of command types to methods that process them. */
     private final HashMap<Command.Type, Consumer<String[]>> _commands =
         new HashMap<>();
@@ -290,11 +820,26 @@ class Game {
         _commands.put(DUMP, this::doDump);
         _commands.put(HELP, this::doHelp);
         _commands.put(MANUAL, this::doManual);
+        _commands.put(MCTS, this::doMcts);
         _commands.put(PIECEMOVE, this::doMove);
         _commands.put(SEED, this::doSeed);
+        _commands.put(PONDER, this::doPonder);
         _commands.put(SETBOARD, this::doSet);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
+        _commands.put(RECORD, this::doRecord);
+        _commands.put(POSITIONS, this::doPositions);
+        _commands.put(IMPORT, this::doImport);
+        _commands.put(LOOKUP, this::doLookup);
+        _commands.put(ANALYZE, this::doAnalyze);
+        _commands.put(BUDGET, this::doBudget);
+        _commands.put(NETWORK, this::doNetwork);
+        _commands.put(PRUNE, this::doPrune);
+        _commands.put(SOLVE, this::doSolve);
+        _commands.put(STATS, this::doStats);
+        _commands.put(UNDO, this::doUndo);
+        _commands.put(REDO, this::doRedo);
+        _commands.put(GOTO, this::doGoto);
         _commands.put(QUIT, this::doQuit);
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
@@ -303,14 +848,44 @@ class Game {
     /** Input source. */
     private final CommandSources _inputs = new CommandSources();
 
-    /** My board and its read-only view. */
-    private Board _board, _constBoard;
+    /** My board. */
+    private Board _board;
+    /** The moves of the current game. */
+    private final GameHistory _history = new GameHistory();
     /** Indicate which players are manual players (as opposed to AIs). */
     private boolean _whiteIsManual, _blackIsManual;
+    /** Indicate which non-manual players use Monte Carlo tree search
+     *  (MCTS) rather than AI. */
+    private boolean _whiteUsesMcts, _blackUsesMcts;
     /** Current game state. */
     private State _state;
+    /** What AI searches in this session have learned. */
+    private final SearchState _searchState;
+    /** Where AI searches are performed, or null if on the game's own
+     *  thread. */
+    private final SearchScheduler _scheduler;
+    /** Time allowed for each AI move (milliseconds), or 0 if
+     *  unlimited. */
+    private long _searchBudget;
+    /** True iff AIs search on their opponents' time. */
+    private boolean _pondering;
+    /** True iff executing a script in quiet mode. */
+    private boolean _quiet;
     /** Used to send messages to the user. */
     private Reporter _reporter;
+    /** The legal moves of positions recently reached in this game. */
+    private final LegalMoveCache _moveCache =
+        new LegalMoveCache(LegalMoveCache.DEFAULT_CAPACITY);
+    /** The seed with which _randoms was last reseeded: by the 'seed'
+     *  command, or at the start of the current game, when it is drawn
+     *  from _randoms so that the game record can reproduce its
+     *  random choices. */
+    private long _seed = new Random().nextLong();
     /** Source of pseudo-random numbers (used by AIs). */
-    private Random _randoms = new Random();
+    private Random _randoms = new Random(_seed);
+    /** Destination for records of the games played, or null if not
+     *  recording. */
+    private GameRecordWriter _recorder;
+    /** The position store, or null if none is open. */
+    private PositionStore _positions;
 }
@@ -0,0 +1,99 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** The moves of a game, from its initial position (as of the last
+ *  'clear', 'set', or 'start', each of which also resets the Board's
+ *  move list), together with a current ply: the number of those
+ *  moves that have been made on the board.  Moves after the current ply
+ *  have been taken back and may be redone, until a different move is
+ *  made.  Each ply takes eight bytes: the id of its Move and the mask of
+ *  the squares whose pieces it captured, which is all that is needed to
+ *  take it back.  Going from one ply to another makes or takes back only
+ *  the moves in between.
+ *  @author Henry Xu
+ */
+class GameHistory {
+
+    /** Initial number of plies for which there is room. */
+    private static final int INITIAL_SIZE = 64;
+
+    /** An empty history. */
+    GameHistory() {
+        clear();
+    }
+
+    /** Forget all moves. */
+    void clear() {
+        _moves = new int[INITIAL_SIZE];
+        _captured = new int[INITIAL_SIZE];
+        _ply = _length = 0;
+    }
+
+    /** Return the number of moves made on the board. */
+    int ply() {
+        return _ply;
+    }
+
+    /** Return the number of moves recorded, including those taken back. */
+    int length() {
+        return _length;
+    }
+
+    /** Return move number K (numbering from 0), where K < length(). */
+    Move move(int k) {
+        return Move.byId(_moves[k]);
+    }
+
+    /** Return the mask of the squares captured by move number K. */
+    int captured(int k) {
+        return _captured[k];
+    }
+
+    /** Record that MOV, which captured the pieces on the squares in mask
+     *  CAPTURED, has been made at the current ply, discarding any moves
+     *  that had been taken back. */
+    void add(Move mov, int captured) {
+        if (_ply == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _ply);
+            _captured = Arrays.copyOf(_captured, 2 * _ply);
+        }
+        _moves[_ply] = mov.id();
+        _captured[_ply] = captured;
+        _ply += 1;
+        _length = _ply;
+    }
+
+    /** Record that the last move made on BOARD has been made at the
+     *  current ply, as for add. */
+    void add(Board board) {
+        Position.History moves = board.history();
+        add(moves.last(), moves.captured());
+    }
+
+    /** Take back or redo moves on BOARD, which must hold the position at
+     *  my current ply, until it holds the position after PLY moves, where
+     *  0 <= PLY <= length(). */
+    void seek(Board board, int ply) {
+        if (ply < 0 || ply > _length) {
+            throw new IllegalArgumentException("no such ply");
+        }
+        while (_ply > ply) {
+            _ply -= 1;
+            board.undo(move(_ply), _captured[_ply]);
+        }
+        while (_ply < ply) {
+            board.makeMove(move(_ply));
+            _ply += 1;
+        }
+    }
+
+    /** Ids of the Moves made, in order. */
+    private int[] _moves;
+    /** _captured[k] is the mask of the squares captured by _moves[k]. */
+    private int[] _captured;
+    /** Number of moves made on the board. */
+    private int _ply;
+    /** Number of moves recorded. */
+    private int _length;
+}
@@ -0,0 +1,199 @@
+package qirkat;
+
+import java.util.Arrays;
+
+import static qirkat.Move.*;
+import static qirkat.PieceColor.*;
+
+/** Describes the compact binary format used to record games.
+ *
+ *  A record file starts with the bytes of MAGIC followed by a VERSION
+ *  byte, and then contains any number of game records, each consisting of
+ *     1. The Board.key() of the position at the start of the game (8 bytes,
+ *        big-endian).  Board.pieces and Board.whoseMove recover the
+ *        arguments to Board.setPieces from it.
+ *     2. The seed with which the game's random number generator was
+ *        reseeded at the start of the game (8 bytes).
+ *     3. The moves of the game.  The first leg of each move is a single byte
+ *        giving its index in a fixed table of all 192 single steps and jumps
+ *        that the geometry of the board allows.  Each further leg of a
+ *        multi-jump is a byte CONTINUE + D, where D is the direction of the
+ *        jump from the square where the previous leg ended.
+ *     4. The byte END, followed by one byte giving the outcome: NO_WINNER,
+ *        WHITE_WON, or BLACK_WON.
+ *  A typical move thus takes one byte, as opposed to the dozen or so of
+ *  its textual transcript.
+ *  @author Henry Xu
+ */
+class GameRecord {
+
+    /** The first bytes of every record file. */
+    static final byte[] MAGIC = { 'Q', 'K', 'G', 'R' };
+    /** The version of the format described here. */
+    static final int VERSION = 1;
+    /** Number of bytes preceding the first game record in a file. */
+    static final int FILE_HEADER_SIZE = MAGIC.length + 1;
+    /** Number of bytes preceding the moves in a game record. */
+    static final int GAME_HEADER_SIZE = 16;
+
+    /** Code terminating the moves of a game. */
+    static final int END = 0xF0;
+    /** Code for the first continuation direction of a multi-jump. */
+    static final int CONTINUE = 0xF8;
+
+    /** Outcome codes. */
+    static final int NO_WINNER = 0, WHITE_WON = 1, BLACK_WON = 2;
+
+    /** Column and row increments for the eight directions, numbered from
+     *  the lower left, in row-major order. */
+    private static final int[]
+        DIR_COL = { -1, 0, 1, -1, 1, -1, 0, 1 },
+        DIR_ROW = { -1, -1, -1, 0, 0, 1, 1, 1 };
+
+    /** Source and destination squares of each leg, indexed by leg code. */
+    private static final int[] LEG_FROM, LEG_TO;
+
+    /** LEG_CODES[F][T] is the leg code of F-T, or -1 if there is none. */
+    private static final int[][] LEG_CODES =
+        new int[MAX_INDEX + 1][MAX_INDEX + 1];
+
+    static {
+        int[] from = new int[END], to = new int[END];
+        int n;
+        n = 0;
+        for (int[] row : LEG_CODES) {
+            Arrays.fill(row, -1);
+        }
+        for (int dist = 1; dist <= 2; dist += 1) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                for (int d = 0; d < DIR_COL.length; d += 1) {
+                    int t = neighbor(k, d, dist);
+                    if (t >= 0) {
+                        from[n] = k;
+                        to[n] = t;
+                        LEG_CODES[k][t] = n;
+                        n += 1;
+                    }
+                }
+            }
+        }
+        LEG_FROM = Arrays.copyOf(from, n);
+        LEG_TO = Arrays.copyOf(to, n);
+    }
+
+    /** Return the square DIST steps from square K in direction DIR, or
+     *  -1 if there is no such square or no line in that direction from
+     *  K on the board. */
+    private static int neighbor(int k, int dir, int dist) {
+        int c = k % SIDE + dist * DIR_COL[dir],
+            r = k / SIDE + dist * DIR_ROW[dir];
+        if (DIR_COL[dir] != 0 && DIR_ROW[dir] != 0 && k % 2 == 1) {
+            return -1;
+        }
+        if (c < 0 || c >= SIDE || r < 0 || r >= SIDE) {
+            return -1;
+        }
+        return r * SIDE + c;
+    }
+
+    /** Return the number of entries in the leg table. */
+    static int numLegs() {
+        return LEG_FROM.length;
+    }
+
+    /** Return the direction number of the jump from square FROM to TO. */
+    private static int jumpDirection(int from, int to) {
+        int dc = (to % SIDE - from % SIDE) / 2,
+            dr = (to / SIDE - from / SIDE) / 2;
+        for (int d = 0; d < DIR_COL.length; d += 1) {
+            if (DIR_COL[d] == dc && DIR_ROW[d] == dr) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("not a jump");
+    }
+
+    /** Write the encoding of MOV into OUT, starting at POS, and return the
+     *  position following it.  OUT must have room for one byte for each
+     *  leg of MOV. */
+    static int encode(Move mov, byte[] out, int pos) {
+        out[pos] = (byte) LEG_CODES[mov.fromIndex()][mov.toIndex()];
+        pos += 1;
+        for (mov = mov.jumpTail(); mov != null; mov = mov.jumpTail()) {
+            out[pos] = (byte) (CONTINUE
+                               + jumpDirection(mov.fromIndex(),
+                                               mov.toIndex()));
+            pos += 1;
+        }
+        return pos;
+    }
+
+    /** Return the number of legs (and so of encoded bytes) in MOV. */
+    static int length(Move mov) {
+        int n;
+        for (n = 0; mov != null; mov = mov.jumpTail()) {
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Return true iff CODE (an unsigned byte value) starts a move, rather
+     *  than continuing one. */
+    static boolean startsMove(int code) {
+        return code < END;
+    }
+
+    /** Return the Move encoded in CODES[START .. END-1], which must consist
+     *  of a leg code followed by the continuation codes, if any, of a single
+     *  move. */
+    static Move decode(byte[] codes, int start, int end) {
+        int first = codes[start] & 0xFF;
+        if (first >= LEG_FROM.length) {
+            throw new IllegalArgumentException("bad move code");
+        }
+        int[] squares = new int[end - start + 1];
+        squares[0] = LEG_FROM[first];
+        squares[1] = LEG_TO[first];
+        for (int i = start + 1; i < end; i += 1) {
+            int dir = (codes[i] & 0xFF) - CONTINUE;
+            int sq = dir < 0 ? -1 : neighbor(squares[i - start], dir, 2);
+            if (sq < 0) {
+                throw new IllegalArgumentException("bad jump continuation");
+            }
+            squares[i - start + 1] = sq;
+        }
+        Move result;
+        result = null;
+        for (int i = squares.length - 1; i > 0; i -= 1) {
+            result = Move.move(col(squares[i - 1]), row(squares[i - 1]),
+                               col(squares[i]), row(squares[i]), result);
+        }
+        return result;
+    }
+
+    /** Return the outcome code for a game won by WINNER (EMPTY if the game
+     *  was abandoned). */
+    static int outcome(PieceColor winner) {
+        switch (winner) {
+        case WHITE:
+            return WHITE_WON;
+        case BLACK:
+            return BLACK_WON;
+        default:
+            return NO_WINNER;
+        }
+    }
+
+    /** Return the winner (EMPTY if none) denoted by outcome code CODE. */
+    static PieceColor winner(int code) {
+        switch (code) {
+        case WHITE_WON:
+            return WHITE;
+        case BLACK_WON:
+            return BLACK;
+        default:
+            return EMPTY;
+        }
+    }
+
+}
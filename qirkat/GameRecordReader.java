@@ -0,0 +1,175 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/** Reads the games in a file written by GameRecordWriter, one at a time.
+ *  Games are read in large blocks through a FileChannel, and a game's moves
+ *  are decoded only on request, so that scanning a file allocates nothing
+ *  per record.  Typical use:
+ *
+ *      try (GameRecordReader games = new GameRecordReader(name)) {
+ *          while (games.next()) {
+ *              ... games.initialKey(), games.moves(), games.winner() ...
+ *          }
+ *      }
+ *  @author Henry Xu
+ */
+class GameRecordReader implements Closeable {
+
+    /** Size of the input buffer (bytes). */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** A reader for the games recorded in the file named FILENAME. */
+    GameRecordReader(String fileName) throws IOException {
+        _channel = FileChannel.open(Paths.get(fileName), READ);
+        _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _buffer.limit(0);
+        if (!fill(GameRecord.FILE_HEADER_SIZE)) {
+            throw new IOException("not a game record file");
+        }
+        for (byte b : GameRecord.MAGIC) {
+            if (_buffer.get() != b) {
+                throw new IOException("not a game record file");
+            }
+        }
+        if (_buffer.get() != GameRecord.VERSION) {
+            throw new IOException("unsupported game record version");
+        }
+    }
+
+    /** Advance to the next game in the file, returning false if there
+     *  are none left. */
+    boolean next() throws IOException {
+        if (!fill(GameRecord.GAME_HEADER_SIZE)) {
+            if (_buffer.hasRemaining()) {
+                throw new IOException("truncated game record");
+            }
+            return false;
+        }
+        _initialKey = _buffer.getLong();
+        _seed = _buffer.getLong();
+        _numCodes = _numMoves = 0;
+        while (true) {
+            if (!fill(1)) {
+                throw new IOException("truncated game record");
+            }
+            int code = _buffer.get() & 0xFF;
+            if (code == GameRecord.END) {
+                break;
+            }
+            if (GameRecord.startsMove(code)) {
+                if (_numMoves == _moveStarts.length) {
+                    _moveStarts = Arrays.copyOf(_moveStarts,
+                                                2 * _numMoves);
+                }
+                _moveStarts[_numMoves] = _numCodes;
+                _numMoves += 1;
+            } else if (_numMoves == 0) {
+                throw new IOException("bad game record");
+            }
+            if (_numCodes == _codes.length) {
+                _codes = Arrays.copyOf(_codes, 2 * _numCodes);
+            }
+            _codes[_numCodes] = (byte) code;
+            _numCodes += 1;
+        }
+        if (!fill(1)) {
+            throw new IOException("truncated game record");
+        }
+        _outcome = _buffer.get();
+        _numGames += 1;
+        return true;
+    }
+
+    /** Return the Board.key() of the starting position of the current
+     *  game. */
+    long initialKey() {
+        return _initialKey;
+    }
+
+    /** Return the random seed in effect at the start of the current
+     *  game. */
+    long seed() {
+        return _seed;
+    }
+
+    /** Return the winner of the current game (EMPTY if it was
+     *  abandoned). */
+    PieceColor winner() {
+        return GameRecord.winner(_outcome);
+    }
+
+    /** Return the number of moves in the current game. */
+    int moveCount() {
+        return _numMoves;
+    }
+
+    /** Return move #K (numbering from 0) of the current game. */
+    Move move(int k) {
+        int end = k + 1 < _numMoves ? _moveStarts[k + 1] : _numCodes;
+        return GameRecord.decode(_codes, _moveStarts[k], end);
+    }
+
+    /** Return a list of the moves of the current game. */
+    ArrayList<Move> moves() {
+        ArrayList<Move> result = new ArrayList<>(_numMoves);
+        for (int k = 0; k < _numMoves; k += 1) {
+            result.add(move(k));
+        }
+        return result;
+    }
+
+    /** Return the number of games read so far. */
+    long gamesRead() {
+        return _numGames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /** Ensure that there are at least N unread bytes in _buffer, reading
+     *  more of the file if necessary.  Return false if the file ends
+     *  first. */
+    private boolean fill(int n) throws IOException {
+        if (_buffer.remaining() >= n) {
+            return true;
+        }
+        _buffer.compact();
+        while (_buffer.position() < n) {
+            if (_channel.read(_buffer) < 0) {
+                break;
+            }
+        }
+        _buffer.flip();
+        return _buffer.remaining() >= n;
+    }
+
+    /** The file being read. */
+    private final FileChannel _channel;
+    /** Holds the unread portion of the most recently read block. */
+    private final ByteBuffer _buffer;
+
+    /** The header of the current game. */
+    private long _initialKey, _seed;
+    /** The outcome code of the current game. */
+    private int _outcome;
+    /** The encoded moves of the current game, in _codes[0 .. _numCodes-1].
+     *  Move #K starts at _codes[_moveStarts[K]]. */
+    private byte[] _codes = new byte[256];
+    /** Index of the first code of each move of the current game. */
+    private int[] _moveStarts = new int[256];
+    /** Number of codes and of moves in the current game. */
+    private int _numCodes, _numMoves;
+    /** Number of games read. */
+    private long _numGames;
+}
@@ -0,0 +1,74 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of binary game records.
+ *  @author Henry Xu
+ */
+public class GameRecordTest {
+
+    private static final String[] GAME1 =
+    { "c2-c3", "c4-c2",
+      "c1-c3", "a3-c1",
+      "c3-a3", "c5-c4",
+      "a3-c5-c3",
+    };
+
+    @Test
+    public void testLegTable() {
+        assertEquals(192, GameRecord.numLegs());
+        byte[] codes = new byte[4];
+        for (String s : new String[] { "a1-b2", "b1-b2", "b2-b4-d2-d4" }) {
+            Move mov = Move.parseMove(s);
+            int len = GameRecord.encode(mov, codes, 0);
+            assertEquals(GameRecord.length(mov), len);
+            assertSame(mov, GameRecord.decode(codes, 0, len));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = File.createTempFile("qirkat", ".rec");
+        file.deleteOnExit();
+        Board b = new Board();
+        long key0 = b.key();
+        try (GameRecordWriter out = new GameRecordWriter(file.getPath())) {
+            out.startGame(b, 42);
+            for (String s : GAME1) {
+                Move mov = Move.parseMove(s);
+                b.makeMove(mov);
+                out.recordMove(mov);
+            }
+            out.endGame(WHITE);
+            out.startGame(b, 7);
+        }
+        try (GameRecordReader in = new GameRecordReader(file.getPath())) {
+            assertTrue(in.next());
+            assertEquals(key0, in.initialKey());
+            assertEquals(42, in.seed());
+            assertEquals(WHITE, in.winner());
+            ArrayList<Move> moves = in.moves();
+            assertEquals(GAME1.length, moves.size());
+            for (int i = 0; i < GAME1.length; i += 1) {
+                assertEquals(GAME1[i], moves.get(i).toString());
+            }
+            assertTrue(in.next());
+            assertEquals(b.key(), in.initialKey());
+            assertEquals(0, in.moveCount());
+            assertEquals(EMPTY, in.winner());
+            assertFalse(in.next());
+        }
+        Board b1 = new Board();
+        b1.setPieces(Board.pieces(b.key()), Board.whoseMove(b.key()));
+        assertEquals(b.key(), b1.key());
+    }
+
+}
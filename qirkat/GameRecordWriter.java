@@ -0,0 +1,73 @@
+package qirkat;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static qirkat.PieceColor.*;
+
+/** Writes games to a file in the format described in GameRecord.  Output
+ *  is buffered, so that a move normally costs one byte of memory traffic;
+ *  the file is brought up to date at the end of each game.
+ *  @author Henry Xu
+ */
+class GameRecordWriter implements Closeable {
+
+    /** Size of the output buffer (bytes). */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** A writer that records games into a new file named FILENAME. */
+    GameRecordWriter(String fileName) throws IOException {
+        _out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(fileName),
+                                     BUFFER_SIZE));
+        _out.write(GameRecord.MAGIC);
+        _out.write(GameRecord.VERSION);
+    }
+
+    /** Begin recording a game starting from the current position of
+     *  BOARD, played with random seed SEED.  Ends any game being recorded
+     *  without a winner. */
+    void startGame(Board board, long seed) throws IOException {
+        if (_inGame) {
+            endGame(EMPTY);
+        }
+        _out.writeLong(board.key());
+        _out.writeLong(seed);
+        _inGame = true;
+    }
+
+    /** Record MOV as the next move of the current game. */
+    void recordMove(Move mov) throws IOException {
+        assert _inGame;
+        int len = GameRecord.encode(mov, _codes, 0);
+        _out.write(_codes, 0, len);
+    }
+
+    /** End the current game (if any), which was won by WINNER (EMPTY if
+     *  abandoned). */
+    void endGame(PieceColor winner) throws IOException {
+        if (!_inGame) {
+            return;
+        }
+        _out.write(GameRecord.END);
+        _out.write(GameRecord.outcome(winner));
+        _inGame = false;
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        endGame(EMPTY);
+        _out.close();
+    }
+
+    /** The record file. */
+    private final DataOutputStream _out;
+    /** Scratch space for encoding moves (more than the legs in a move). */
+    private final byte[] _codes = new byte[Move.SIDE * Move.SIDE];
+    /** True iff a game has been started and not ended. */
+    private boolean _inGame;
+}
@@ -0,0 +1,161 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A server that hosts any number of independent Qirkat sessions over
+ *  TCP.  Each connection is a session speaking the same command language
+ *  as the console: a Game with its own Board, input, and Reporter, which
+ *  ends when the client sends 'quit' or closes the connection.  Each
+ *  session runs on its own thread, which is a virtual thread when the
+ *  Java runtime provides them, so that idle sessions cost little more
+ *  than their boards.  AI searches for all sessions are queued on a
+ *  shared SearchScheduler with a fixed number of threads, and each session
+ *  has a small table of searched positions of its own.  Since clients
+ *  may be anyone who can connect, sessions may not use the commands that
+ *  read or write files on the server's host (see Game), and the server
+ *  listens only on the loopback interface unless given another host.
+ *  @author Henry Xu
+ */
+class GameServer implements Closeable {
+
+    /** Log base 2 of the number of entries in each session's table of
+     *  searched positions (512KB per session that uses an AI). */
+    static final int SESSION_LOG_TABLE_SIZE = 15;
+
+    /** Maximum number of connections waiting to be accepted.  (The
+     *  default, 50, makes clients connecting in bursts wait for
+     *  retransmissions.) */
+    private static final int BACKLOG = 1024;
+
+    /** Longest command line accepted from a client. */
+    private static final int MAX_LINE_LENGTH = 256;
+
+    /** A server listening on the loopback interface on PORT (0 for any
+     *  free port) that performs at most SEARCHTHREADS AI searches at
+     *  once. */
+    GameServer(int port, int searchThreads) throws IOException {
+        this(null, port, searchThreads);
+    }
+
+    /** A server listening on PORT (0 for any free port) of the interface
+     *  with host name or address HOST (the loopback interface if null;
+     *  every interface if "*") that performs at most SEARCHTHREADS AI
+     *  searches at once. */
+    GameServer(String host, int port, int searchThreads)
+        throws IOException {
+        InetAddress address =
+            host == null ? InetAddress.getLoopbackAddress()
+            : host.equals("*") ? null
+            : InetAddress.getByName(host);
+        _listener = new ServerSocket(port, BACKLOG, address);
+        _scheduler = new SearchScheduler(searchThreads);
+        _sessions = sessionExecutor();
+    }
+
+    /** Return the port on which I am listening. */
+    int port() {
+        return _listener.getLocalPort();
+    }
+
+    /** Return the scheduler of my sessions' searches. */
+    SearchScheduler scheduler() {
+        return _scheduler;
+    }
+
+    /** Return the number of sessions in progress. */
+    int activeSessions() {
+        return _active.get();
+    }
+
+    /** Accept connections and start a session for each, until closed. */
+    void serve() {
+        while (!_listener.isClosed()) {
+            try {
+                Socket socket = _listener.accept();
+                _active.incrementAndGet();
+                _sessions.execute(() -> session(socket));
+            } catch (SocketException excp) {
+                /* Listener closed. */
+                break;
+            } catch (IOException excp) {
+                System.err.printf("Error accepting connection: %s%n",
+                                  excp.getMessage());
+            }
+        }
+    }
+
+    /** Stop accepting connections and shut down the scheduler.  Sessions
+     *  in progress are not interrupted. */
+    @Override
+    public void close() throws IOException {
+        _listener.close();
+        _sessions.shutdown();
+        _scheduler.shutdown();
+    }
+
+    /** Conduct a session with the client connected to SOCKET, closing
+     *  SOCKET at the end. */
+    private void session(Socket socket) {
+        try (Socket s = socket) {
+            InputStreamReader in = new InputStreamReader(s.getInputStream());
+            PrintStream out = new PrintStream(s.getOutputStream(), true);
+            Game game =
+                new Game(new Board(),
+                         new ReaderSource(in, false, MAX_LINE_LENGTH),
+                         new TextReporter(out),
+                         new SearchState(SESSION_LOG_TABLE_SIZE),
+                         _scheduler);
+            game.process();
+        } catch (IOException excp) {
+            /* Ignore IOException: the client has gone. */
+        } catch (RuntimeException excp) {
+            System.err.printf("Session failed: %s%n", excp);
+        } finally {
+            _active.decrementAndGet();
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread, if
+     *  this Java runtime supports them, and otherwise on a (possibly
+     *  reused) daemon thread. */
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService)
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(daemonThreads("qirkat-game"));
+        }
+    }
+
+    /** Return a factory for daemon threads whose names start with
+     *  NAME. */
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return (r) -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Accepts connections. */
+    private final ServerSocket _listener;
+    /** Runs AI searches for all sessions. */
+    private final SearchScheduler _scheduler;
+    /** Runs sessions. */
+    private final ExecutorService _sessions;
+    /** Number of sessions in progress. */
+    private final AtomicInteger _active = new AtomicInteger();
+}
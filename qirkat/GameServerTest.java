@@ -0,0 +1,118 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/** Tests of the game server, using clients on the loopback interface.
+ *  @author Henry Xu
+ */
+public class GameServerTest {
+
+    /** Number of simultaneous clients. */
+    private static final int CLIENTS = 8;
+
+    /** Connect to the server on PORT, send it the lines of SCRIPT followed
+     *  by end of input, and return everything it sends back before
+     *  closing the connection. */
+    private static String converse(int port, String... script)
+        throws IOException {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintStream out = new PrintStream(s.getOutputStream(), true);
+            for (String line : script) {
+                out.println(line);
+            }
+            s.shutdownOutput();
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(s.getInputStream()));
+            StringBuilder result = new StringBuilder();
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                result.append(line).append("\n");
+            }
+            return result.toString();
+        }
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        GameServer server = new GameServer(0, 2);
+        Thread acceptor = new Thread(server::serve);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            ArrayList<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i += 1) {
+                String mov = i % 2 == 0 ? "c2-c3" : "b2-c3";
+                Callable<String> client =
+                    () -> converse(server.port(), "auto black", "start",
+                                   mov, "dump", "quit", "dump");
+                replies.add(clients.submit(client));
+            }
+            for (int i = 0; i < CLIENTS; i += 1) {
+                String reply = replies.get(i).get();
+                assertTrue(reply.startsWith("Black moves "));
+                assertEquals("one dump per session", 2,
+                             reply.split("===", -1).length - 1);
+            }
+            String reply = converse(server.port(), "dump");
+            assertTrue(reply.contains("  b b b b b"));
+            reply = converse(server.port(), "load /etc/passwd",
+                             "record game.rec", "positions pos.db",
+                             "import game.rec", "network net.bin");
+            assertEquals(5, reply.split("not available", -1).length - 1);
+            reply = converse(server.port(), "dump " + "x".repeat(100_000),
+                             "dump");
+            assertTrue(reply.startsWith("Line too long"));
+            assertTrue(reply.contains("  b b b b b"));
+            long done = server.scheduler().completed();
+            reply = converse(server.port(), "budget 200", "analyze 2",
+                             "solve 1000");
+            assertTrue(reply.contains("Best moves for White"));
+            assertTrue(reply.contains("Not solved in"));
+            assertEquals(done + 2, server.scheduler().completed());
+            reply = converse(server.port(), "mcts black", "budget 50",
+                             "start", "c2-c3", "ponder on", "quit");
+            assertTrue(reply.startsWith("Black moves "));
+            assertTrue(reply.contains("not available"));
+            assertEquals(done + 3, server.scheduler().completed());
+        } finally {
+            clients.shutdown();
+            server.close();
+        }
+        for (int i = 0; i < 100 && server.activeSessions() > 0; i += 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.activeSessions());
+    }
+
+    @Test
+    public void testUndoAcrossStart() throws Exception {
+        try (GameServer server = new GameServer(0, 1)) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            String reply = converse(server.port(), "manual black", "c2-c3",
+                                    "start", "c4-c2", "undo", "undo",
+                                    "dump", "redo", "dump");
+            assertTrue(reply.contains("No move to undo"));
+            assertTrue(reply.contains(String.format("  b b w w w%n"
+                                                    + "  w w - w w%n")));
+            assertTrue(reply.contains("  w w b w w"));
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package qirkat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static qirkat.Search.CAPTURE_THREAT_VALUE;
+import static qirkat.Search.WINNING_VALUE;
+
+/** Scores the positions at the frontier of a search together, rather
+ *  than one at a time.  Each position is packed into a long: its
+ *  Board.key(), with GAME_OVER set if the player to move has no moves.
+ *  The scores are those of Search.staticScore, computed from the packed
+ *  states alone with a few population counts per state: a mask's count
+ *  of pieces, and the sum of their row numbers, taken bit-plane by
+ *  bit-plane (the pieces in rows whose number has bit P set contribute
+ *  2**P each).  The first pass over a batch is a straight-line loop over
+ *  arrays, which leaves the JIT compiler free to vectorize it.
+ *
+ *  A LeafBatch reuses its arrays, and so may be used by only one thread
+ *  at a time.
+ *  @author Henry Xu
+ */
+class LeafBatch {
+
+    /** Flag in a packed state indicating that the game is over. */
+    static final long GAME_OVER = Board.KEY_BLACK_TO_MOVE << 1;
+
+    /** Number of squares. */
+    private static final int SQUARES = Move.SIDE * Move.SIDE;
+    /** Mask of the squares in one color's part of a key. */
+    private static final long ALL_SQUARES = (1L << SQUARES) - 1;
+    /** PLANES[P] is the mask of the squares whose row number has bit P
+     *  set. */
+    private static final long[] PLANES = new long[3];
+
+    static {
+        for (int k = 0; k < SQUARES; k += 1) {
+            for (int p = 0; p < PLANES.length; p += 1) {
+                if ((k / Move.SIDE & (1 << p)) != 0) {
+                    PLANES[p] |= 1L << k;
+                }
+            }
+        }
+    }
+
+    /** An empty batch. */
+    LeafBatch() {
+        _states = new long[INITIAL_SIZE];
+        _scores = new int[INITIAL_SIZE];
+    }
+
+    /** Return the static scores of the positions reached by each of
+     *  MOVES from BOARD, in the same order.  BOARD is restored on return.
+     *  The result is overwritten by the next call. */
+    int[] score(Board board, List<Move> moves) {
+        int n = moves.size();
+        if (n > _states.length) {
+            _states = Arrays.copyOf(_states, 2 * n);
+            _scores = Arrays.copyOf(_scores, 2 * n);
+        }
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves.get(i));
+            _states[i] = board.key() | (board.gameOver() ? GAME_OVER : 0);
+            board.undo();
+        }
+        staticScores(_states, n, _scores);
+        return _scores;
+    }
+
+    /** Set SCORES[I] to Search.staticScore of packed state STATES[I], for
+     *  0 <= I < N. */
+    static void staticScores(long[] states, int n, int[] scores) {
+        for (int i = 0; i < n; i += 1) {
+            long white = states[i] & ALL_SQUARES,
+                black = (states[i] >>> Board.KEY_BLACK_SHIFT) & ALL_SQUARES;
+            int whites = Long.bitCount(white), blacks = Long.bitCount(black);
+            scores[i] = (whites - blacks) * 1000
+                + (Move.SIDE * whites - rowSum(white) - blacks
+                   - rowSum(black)) * Move.SIDE * 100;
+        }
+        for (int i = 0; i < n; i += 1) {
+            long state = states[i];
+            boolean blackToMove = (state & Board.KEY_BLACK_TO_MOVE) != 0;
+            if ((state & GAME_OVER) != 0) {
+                scores[i] = blackToMove ? WINNING_VALUE : -WINNING_VALUE;
+                continue;
+            }
+            long white = state & ALL_SQUARES,
+                black = (state >>> Board.KEY_BLACK_SHIFT) & ALL_SQUARES;
+            if (blackToMove) {
+                if (Board.capturers(black, white) != 0) {
+                    scores[i] -= CAPTURE_THREAT_VALUE;
+                }
+            } else if (Board.capturers(white, black) != 0) {
+                scores[i] += CAPTURE_THREAT_VALUE;
+            }
+        }
+    }
+
+    /** Return the sum of the row numbers of the squares in MASK. */
+    private static int rowSum(long mask) {
+        return Long.bitCount(mask & PLANES[0])
+            + 2 * Long.bitCount(mask & PLANES[1])
+            + 4 * Long.bitCount(mask & PLANES[2]);
+    }
+
+    /** Initial capacity of a batch. */
+    private static final int INITIAL_SIZE = 32;
+
+    /** The packed states of the current batch. */
+    private long[] _states;
+    /** The scores of the current batch. */
+    private int[] _scores;
+}
@@ -0,0 +1,96 @@
+package qirkat;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A cache of the legal moves of recently seen positions, which discards
+ *  the least recently used position when full.  Each Game keeps one for
+ *  its Board (see Board.useMoveCache); searches do not use it.  Since
+ *  the legality of a non-capturing move depends on the moves that led to
+ *  the position, a position is identified by both its Board.key() and
+ *  its (immutable) Position.History, so entries never become wrong and
+ *  need never be invalidated.
+ *  @author Henry Xu
+ */
+class LegalMoveCache {
+
+    /** Default number of positions retained. */
+    static final int DEFAULT_CAPACITY = 256;
+
+    /** A cache that retains the moves of CAPACITY positions. */
+    LegalMoveCache(int capacity) {
+        _entries = new LinkedHashMap<Entry, List<Move>>(2 * capacity, 0.75f,
+                                                         true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Entry,
+                                                List<Move>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Return the legal moves of BOARD, as by Board.getMoves, from the
+     *  cache if possible.  The result must not be modified. */
+    List<Move> legalMoves(Board board) {
+        Entry entry = new Entry(board.key(), board.history());
+        List<Move> moves;
+        synchronized (this) {
+            moves = _entries.get(entry);
+        }
+        if (moves == null) {
+            _misses.incrementAndGet();
+            moves = Collections.unmodifiableList(board.getMoves());
+            synchronized (this) {
+                _entries.put(entry, moves);
+            }
+        } else {
+            _hits.incrementAndGet();
+        }
+        return moves;
+    }
+
+    /** Return the number of lookups answered from the cache. */
+    long hits() {
+        return _hits.get();
+    }
+
+    /** Return the number of lookups that generated moves. */
+    long misses() {
+        return _misses.get();
+    }
+
+    /** The identity of a cached position. */
+    private static class Entry {
+        /** The position with Board.key() KEY reached by HISTORY. */
+        Entry(long key, Position.History history) {
+            _key = key;
+            _history = history;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && ((Entry) obj)._key == _key
+                && ((Entry) obj)._history == _history;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_key * 0x9E3779B97F4A7C15L)
+                ^ System.identityHashCode(_history);
+        }
+
+        /** The position's key. */
+        private final long _key;
+        /** The moves that led to it. */
+        private final Position.History _history;
+    }
+
+    /** The cached move lists, least recently used first. */
+    private final LinkedHashMap<Entry, List<Move>> _entries;
+    /** Counts of lookups answered from the cache and not. */
+    private final AtomicLong _hits = new AtomicLong(),
+        _misses = new AtomicLong();
+}
@@ -0,0 +1,447 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static qirkat.PieceColor.*;
+import static qirkat.SearchScheduler.Priority.*;
+
+/** A Player that chooses its moves by Monte Carlo tree search: it plays
+ *  out many games from the current position, choosing moves within a
+ *  growing tree of positions by the UCT rule and at random below it,
+ *  and plays the move that it explored most.
+ *
+ *  Several threads may add playouts to the tree at once.  Each counts
+ *  its visit to a node as soon as it passes through, before it knows the
+ *  result (a "virtual loss"), so that other threads are steered towards
+ *  other lines meanwhile.  The tree is kept from move to move: after the
+ *  opponent replies, the subtree for the position reached becomes the
+ *  new tree.  A playout takes as long as a search allows per move (see
+ *  Game.searchBudget), or a fixed number of playouts if there is no
+ *  limit.  If the Game has a scheduler, the playouts for each move are
+ *  performed by one job on the scheduler, at the priority of an AI's
+ *  search, so that they count against its limit on threads; otherwise,
+ *  there is a thread per processor.
+ *  @author Henry Xu
+ */
+class MCTS extends Player {
+
+    /** Number of playouts per move when there is no time budget. */
+    static final int DEFAULT_PLAYOUTS = 20000;
+
+    /** Length of a playout (plies beyond the tree) after which the game is
+     *  judged by the numbers of pieces remaining. */
+    static final int MAX_PLAYOUT = 100;
+
+    /** Weight of exploration relative to success in the UCT rule. */
+    private static final double EXPLORATION = 1.4;
+
+    /** A new MCTS player for GAME that will play MYCOLOR. */
+    MCTS(Game game, PieceColor myColor) {
+        super(game, myColor);
+        _threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    Move myMove() {
+        Main.startTiming();
+        Position position = board();
+        Node root = reusedRoot(position);
+        long start = System.nanoTime();
+        long playouts = search(root, position, game().searchBudget());
+        Move move = root.children() == null
+            ? new Board(position).getMoves().get(0) : root.bestMove();
+        Main.endTiming();
+        reportRate(playouts, System.nanoTime() - start);
+
+        game().reportMove("%s moves %s.", myColor(), move);
+        _root = root.child(move);
+        _rootPosition = new Board(position);
+        _rootPosition.makeMove(move);
+        return move;
+    }
+
+    /** Return the number of playouts that I have performed. */
+    long playouts() {
+        return _totalPlayouts;
+    }
+
+    /** Return the tree for POSITION: the subtree of my previous tree for
+     *  the opponent's reply that led to it, if there is one, and
+     *  otherwise a new tree. */
+    private Node reusedRoot(Position position) {
+        Node root = null;
+        if (_root != null && _root.children() != null) {
+            for (Node child : _root.children()) {
+                Board b = new Board(_rootPosition);
+                b.makeMove(child.move());
+                if (b.key() == position.key()) {
+                    root = child;
+                    break;
+                }
+            }
+        }
+        _root = null;
+        _rootPosition = null;
+        return root == null ? new Node(null, null) : root;
+    }
+
+    /** Perform playouts from ROOT, the tree for POSITION, for BUDGET
+     *  milliseconds, or DEFAULT_PLAYOUTS in all if BUDGET is 0.  Return
+     *  the number of playouts performed. */
+    private long search(Node root, Position position, long budget) {
+        AtomicLong remaining = new AtomicLong(budget <= 0
+                                              ? DEFAULT_PLAYOUTS
+                                              : Long.MAX_VALUE);
+        SearchScheduler scheduler = game().scheduler();
+        if (scheduler != null) {
+            Worker worker =
+                new Worker(root, position, remaining,
+                           new Random(game().nextRandom(Integer.MAX_VALUE)));
+            long playouts =
+                scheduled(scheduler, worker, remaining, budget);
+            _totalPlayouts += playouts;
+            return playouts;
+        }
+        long deadline = budget <= 0 ? 0
+            : System.nanoTime() + budget * 1_000_000;
+        Worker[] workers = new Worker[_threads];
+        for (int i = 0; i < workers.length; i += 1) {
+            workers[i] =
+                new Worker(root, position, remaining,
+                           new Random(game().nextRandom(Integer.MAX_VALUE)));
+        }
+        Thread[] threads = new Thread[workers.length - 1];
+        for (int i = 0; i < threads.length; i += 1) {
+            Worker w = workers[i + 1];
+            threads[i] = new Thread(() -> w.run(deadline),
+                                    "qirkat-mcts-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        workers[0].run(deadline);
+        for (Thread t : threads) {
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException excp) {
+                    /* Ignore InterruptedException */
+                }
+            }
+        }
+        long playouts = 0;
+        for (Worker w : workers) {
+            playouts += w.playouts();
+        }
+        _totalPlayouts += playouts;
+        return playouts;
+    }
+
+    /** Run WORKER as a job on SCHEDULER, with a budget of BUDGET
+     *  milliseconds (0 for none), until the budget is spent or REMAINING
+     *  playouts are used up, and return the number of playouts it
+     *  performed. */
+    private long scheduled(SearchScheduler scheduler, Worker worker,
+                           AtomicLong remaining, long budget) {
+        Future<Long> task =
+            scheduler.submit(new SearchScheduler.Job<Long>() {
+                @Override
+                public Long run(long deadline) {
+                    worker.run(deadline == Search.NO_DEADLINE ? 0
+                               : deadline);
+                    return worker.playouts();
+                }
+
+                @Override
+                public void stop() {
+                    remaining.set(0);
+                }
+
+                @Override
+                public boolean expired() {
+                    return worker.expired();
+                }
+            }, budget,
+                game().isManual(myColor().opposite()) ? INTERACTIVE : BATCH);
+        while (true) {
+            try {
+                return task.get();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+    }
+
+    /** If timing, report the rate of PLAYOUTS playouts in ELAPSED
+     *  nanoseconds. */
+    private static void reportRate(long playouts, long elapsed) {
+        if (Main.timing()) {
+            System.err.printf("[%d playouts, %.0f playouts/sec]%n", playouts,
+                              playouts * 1e9 / Math.max(1, elapsed));
+        }
+    }
+
+    /** Performs playouts on one thread. */
+    private static class Worker {
+
+        /** A worker that performs playouts from ROOT, the tree for
+         *  POSITION, until REMAINING, which it shares with other workers,
+         *  is used up, making random choices with RANDOM. */
+        Worker(Node root, Position position, AtomicLong remaining,
+               Random random) {
+            _root = root;
+            _position = position;
+            _remaining = remaining;
+            _random = random;
+        }
+
+        /** Perform playouts until my playouts are used up or until
+         *  DEADLINE (per System.nanoTime, or none if 0). */
+        void run(long deadline) {
+            while (_remaining.getAndDecrement() > 0) {
+                if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                    _expired = true;
+                    break;
+                }
+                playout(new Board(_position));
+                _playouts += 1;
+            }
+        }
+
+        /** Return true iff my last run stopped at its deadline. */
+        boolean expired() {
+            return _expired;
+        }
+
+        /** Return the number of playouts I have performed. */
+        long playouts() {
+            return _playouts;
+        }
+
+        /** Perform one playout on BOARD, which holds the position at my
+         *  root, adding to my tree. */
+        private void playout(Board board) {
+            _path.clear();
+            Node node = _root;
+            node.visit();
+            _path.add(node);
+            while (!board.gameOver()) {
+                Node[] children = node.expand(board, _moves);
+                Node next = select(node, children);
+                board.makeMove(next.move());
+                next.visit();
+                _path.add(next);
+                boolean fresh = next.visits() == 1;
+                node = next;
+                if (fresh) {
+                    break;
+                }
+            }
+            PieceColor winner = finish(board);
+            for (int i = 1; i < _path.size(); i += 1) {
+                Node n = _path.get(i);
+                if (n.mover() == winner) {
+                    n.win();
+                }
+            }
+        }
+
+        /** Return the child of NODE, among CHILDREN, with the greatest
+         *  UCT score, visiting any unvisited child first. */
+        private Node select(Node node, Node[] children) {
+            double logVisits = Math.log(Math.max(1, node.visits()));
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int offset = _random.nextInt(children.length);
+            for (int i = 0; i < children.length; i += 1) {
+                Node child = children[(i + offset) % children.length];
+                long stats = child.stats();
+                int visits = Node.visits(stats);
+                if (visits == 0) {
+                    return child;
+                }
+                double score = (double) Node.wins(stats) / visits
+                    + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (score > bestScore) {
+                    best = child;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /** Play random moves on BOARD until the game is over or
+         *  MAX_PLAYOUT moves have been made, and return the winner,
+         *  judging by numbers of pieces in the latter case. */
+        private PieceColor finish(Board board) {
+            for (int n = 0; n < MAX_PLAYOUT && !board.gameOver(); n += 1) {
+                _moves.clear();
+                board.getMoves(_moves);
+                board.makeMove(_moves.get(_random.nextInt(_moves.size())));
+            }
+            if (board.gameOver()) {
+                return board.whoseMove().opposite();
+            }
+            long key = board.key();
+            int white = Long.bitCount(key & SQUARES_MASK),
+                black = Long.bitCount((key >>> Board.KEY_BLACK_SHIFT)
+                                      & SQUARES_MASK);
+            return white > black ? WHITE : black > white ? BLACK
+                : board.whoseMove();
+        }
+
+        /** Root of the tree. */
+        private final Node _root;
+        /** Position at the root. */
+        private final Position _position;
+        /** Number of playouts still to be performed by all workers. */
+        private final AtomicLong _remaining;
+        /** Source of random choices. */
+        private final Random _random;
+        /** The nodes visited by the current playout. */
+        private final ArrayList<Node> _path = new ArrayList<>();
+        /** Scratch list of moves. */
+        private final ArrayList<Move> _moves = new ArrayList<>();
+        /** Number of playouts performed. */
+        private long _playouts;
+        /** True iff my last run stopped at its deadline. */
+        private boolean _expired;
+    }
+
+    /** A position in the tree, reached from its parent by a move.  Its
+     *  visit and win counts are packed into one long, so that both may
+     *  be read and updated atomically without locking. */
+    private static class Node {
+
+        /** A node reached by MOVE from PARENT (both null for a root). */
+        Node(Move move, Node parent) {
+            _move = move;
+            _mover = parent == null ? null : parent._toMove;
+        }
+
+        /** Return the move that reaches me. */
+        Move move() {
+            return _move;
+        }
+
+        /** Return the player who made move(), or null for a root. */
+        PieceColor mover() {
+            return _mover;
+        }
+
+        /** Return my children, or null if not yet expanded. */
+        Node[] children() {
+            return _children;
+        }
+
+        /** Return my child reached by MOV, or null if there is none. */
+        Node child(Move mov) {
+            Node[] children = _children;
+            if (children != null) {
+                for (Node child : children) {
+                    if (child._move == mov) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /** Return my children, creating them first if necessary from
+         *  BOARD, which holds my position, using MOVES as scratch
+         *  space.  Requires !BOARD.gameOver(). */
+        Node[] expand(Board board, ArrayList<Move> moves) {
+            Node[] children = _children;
+            if (children != null) {
+                return children;
+            }
+            synchronized (this) {
+                if (_children == null) {
+                    _toMove = board.whoseMove();
+                    moves.clear();
+                    board.getMoves(moves);
+                    Node[] result = new Node[moves.size()];
+                    for (int i = 0; i < result.length; i += 1) {
+                        result[i] = new Node(moves.get(i), this);
+                    }
+                    _children = result;
+                }
+                return _children;
+            }
+        }
+
+        /** Count a visit to me, whose result is not yet known. */
+        void visit() {
+            _stats.addAndGet(1L << VISIT_SHIFT);
+        }
+
+        /** Count a win for mover() in a visit counted by visit(). */
+        void win() {
+            _stats.incrementAndGet();
+        }
+
+        /** Return my visit and win counts, packed as for visits and
+         *  wins. */
+        long stats() {
+            return _stats.get();
+        }
+
+        /** Return my number of visits. */
+        int visits() {
+            return visits(_stats.get());
+        }
+
+        /** Return the number of visits in packed counts STATS. */
+        static int visits(long stats) {
+            return (int) (stats >>> VISIT_SHIFT);
+        }
+
+        /** Return the number of wins in packed counts STATS. */
+        static int wins(long stats) {
+            return (int) stats;
+        }
+
+        /** Return the move to my most visited child. */
+        Move bestMove() {
+            Node best = null;
+            for (Node child : _children) {
+                if (best == null || child.visits() > best.visits()) {
+                    best = child;
+                }
+            }
+            return best._move;
+        }
+
+        /** Position of the visit count in _stats. */
+        private static final int VISIT_SHIFT = 32;
+
+        /** The move that reaches me. */
+        private final Move _move;
+        /** The player who made _move. */
+        private final PieceColor _mover;
+        /** The player to move in my position, once expanded. */
+        private volatile PieceColor _toMove;
+        /** My children, or null if not yet expanded. */
+        private volatile Node[] _children;
+        /** Visits (bits 32-63) and wins (bits 0-31). */
+        private final AtomicLong _stats = new AtomicLong();
+    }
+
+    /** Mask of the bits of one color's pieces in a key. */
+    private static final long SQUARES_MASK =
+        (1L << Board.KEY_BLACK_SHIFT) - 1;
+
+    /** Number of threads performing playouts. */
+    private final int _threads;
+    /** The tree after my last move, or null. */
+    private Node _root;
+    /** The position after my last move, or null. */
+    private Board _rootPosition;
+    /** Total number of playouts performed. */
+    private long _totalPlayouts;
+}
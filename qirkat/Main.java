@@ -1,56 +1,132 @@
 package qirkat;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.PipedReader;
-import java.io.PipedWriter;
+import java.io.PrintWriter;
 
 /** The main program for Qirkat.
  *  @author P. N. Hilfinger */
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing".  If ARGS[k] is "--async", write
+     *  messages from a separate thread, waiting for room when too many are
+     *  pending; "--async-drop" does likewise, but discards messages that
+     *  do not fit.  If ARGS[k] is "--server", serve games to clients
+     *  connecting to TCP port ARGS[k+1] instead of playing on the
+     *  console, listening only on the loopback interface unless ARGS[j]
+     *  is "--host", in which case on the interface named by ARGS[j+1]
+     *  ("*" for all).  If ARGS[k] is "--analyze", instead analyze the
+     *  positions in file ARGS[k+1], writing the results to file
+     *  ARGS[k+2] (see Analyzer), searching each to depth ARGS[j+1] if
+     *  ARGS[j] is "--depth", for at most ARGS[j+1] milliseconds if
+     *  ARGS[j] is "--budget", and ARGS[j+1] positions at once if ARGS[j]
+     *  is "--workers" (by default, as many as there are processors). */
     public static void main(String[] args) {
         boolean useGUI;
+        AsyncReporter.Policy async;
+        int port;
+        String host;
+        String[] analyze;
+        int depth, workers;
+        long budget;
         System.out.println("CS61B Qirkat! Version 2.0");
         useGUI = false;
+        async = null;
+        port = -1;
+        host = null;
+        analyze = null;
+        depth = Analyzer.DEFAULT_DEPTH;
+        workers = Runtime.getRuntime().availableProcessors();
+        budget = 0;
         _timing = false;
         for (int i = 0; i < args.length; i += 1) {
             switch (args[i]) {
+            case "--server":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                try {
+                    port = Integer.parseInt(args[i]);
+                } catch (NumberFormatException excp) {
+                    usage();
+                }
+                break;
+            case "--host":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                i += 1;
+                host = args[i];
+                break;
+            case "--analyze":
+                if (i + 2 >= args.length) {
+                    usage();
+                }
+                analyze = new String[] { args[i + 1], args[i + 2] };
+                i += 2;
+                break;
+            case "--depth":
+                i += 1;
+                depth = (int) numericOption(args, i);
+                break;
+            case "--budget":
+                i += 1;
+                budget = numericOption(args, i);
+                break;
+            case "--workers":
+                i += 1;
+                workers = (int) numericOption(args, i);
+                break;
             case "--display":
                 useGUI = true;
                 break;
             case "--timing":
                 _timing = true;
                 break;
+            case "--async":
+                async = AsyncReporter.Policy.BLOCK;
+                break;
+            case "--async-drop":
+                async = AsyncReporter.Policy.DROP;
+                break;
             default:
                 usage();
                 break;
             }
         }
 
+        if (port >= 0) {
+            serve(host, port);
+            return;
+        }
+        if (analyze != null) {
+            analyze(analyze[0], analyze[1], workers, depth, budget);
+            return;
+        }
+
         Game game;
         Board board = new Board();
 
         game = null;
         if (useGUI) {
             try {
-
-
-
-                PipedWriter writer = new PipedWriter();
-                GUI display = new GUI("Qirkat", board, writer);
-                game = new Game(board,
-                                new ReaderSource(new PipedReader(writer,
-                                                                 BUFFER_LEN),
-                                                 false),
-                                display);
-                display.display(true);
+                game = GUI.displayGame("Qirkat", board, BUFFER_LEN);
             } catch (IOException excp) {
                 System.err.printf("Could not connect to display.%n");
                 System.exit(1);
             }
+        } else if (async != null) {
+            game = new Game(board,
+                            new ReaderSource(new InputStreamReader(System.in),
+                                             false),
+                            new AsyncReporter(System.out, System.err,
+                                              AsyncReporter.DEFAULT_CAPACITY,
+                                              async));
         } else {
             game = new Game(board,
                             new ReaderSource(new InputStreamReader(System.in),
@@ -58,12 +134,68 @@ public class Main {
                             new TextReporter());
         }
         game.process();
+        reportTotalTimes();
+        System.exit(0);
+    }
+
+    /** Serve games on TCP port PORT of the interface named HOST (the
+     *  loopback interface if null) until killed, performing as many AI
+     *  searches at once as there are processors. */
+    static void serve(String host, int port) {
+        try {
+            GameServer server =
+                new GameServer(host, port,
+                               Runtime.getRuntime().availableProcessors());
+            System.out.printf("Serving games on port %d.%n", server.port());
+            server.serve();
+        } catch (IOException excp) {
+            System.err.printf("Could not serve on port %d: %s%n", port,
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return ARGS[K] as a positive number, giving a usage message and
+     *  exiting if there is none. */
+    static long numericOption(String[] args, int k) {
+        long result;
+        result = 0;
+        try {
+            result = Long.parseLong(args[k]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            usage();
+        }
+        if (result <= 0 || result > Integer.MAX_VALUE) {
+            usage();
+        }
+        return result;
+    }
+
+    /** Analyze the positions in file INPUT, writing the results to file
+     *  OUTPUT, searching WORKERS positions at once, each to at most DEPTH
+     *  levels and for at most BUDGET milliseconds (0 for no limit). */
+    static void analyze(String input, String output, int workers,
+                        int depth, long budget) {
+        long start = System.currentTimeMillis();
+        try (BufferedReader in = new BufferedReader(new FileReader(input));
+             PrintWriter out = new PrintWriter(new FileWriter(output))) {
+            int n = new Analyzer(workers, depth, budget).analyze(in, out);
+            System.out.printf("Analyzed %d positions in %d msec.%n", n,
+                              System.currentTimeMillis() - start);
+        } catch (IOException excp) {
+            System.err.printf("Could not analyze %s: %s%n", input,
+                              excp.getMessage());
+            System.exit(1);
+        }
     }
 
     /** Give usage message and exit. */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
+                           + " [--async | --async-drop]"
+                           + " [--server PORT [--host H]]\n"
+                           + "       java qirkat.Main --analyze IN OUT"
+                           + " [--depth D] [--budget MS] [--workers N]");
         System.exit(1);
     }
 
@@ -88,6 +220,11 @@ public class Main {
         }
     }
 
+    /** Return true iff AIs are timing their moves. */
+    static boolean timing() {
+        return _timing;
+    }
+
     /** Report total time statistics, if timing. */
     static void reportTotalTimes() {
         if (_timing && _numTimedOps > 0) {
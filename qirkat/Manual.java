@@ -23,8 +23,8 @@ class Manual extends Player {
             if (cmnd == null) {
                 return null;
             } else {
-                Move mov = Move.parseMove(cmnd.operands()[0]);
-                if (board().legalMove(mov)) {
+                Move mov = Move.moveOf(cmnd.operands()[0]);
+                if (mov != null && game().legalMove(mov)) {
                     return mov;
                 }
             }
@@ -1,11 +1,11 @@
 package qirkat;
 
 import static java.lang.Math.abs;
+import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /** Represents a Qirkat move. There is one Move object created for
  *  each distinct Move.  A "vestigial" move represents a single board
@@ -18,6 +18,10 @@ class Move {
     /** Size of a side of the board. */
     static final int SIDE = 5;
 
+    /** Greatest number of jumps in a legal capture: one for each of the
+     *  opponent's pieces. */
+    static final int MAX_JUMPS = 12;
+
     /** Maximum linearized index. */
     static final int MAX_INDEX = SIDE * SIDE - 1;
 
@@ -27,10 +31,6 @@ class Move {
             STEP_R = 5,
             INDEX_ORIGIN = -('a' * STEP_C + '1' * STEP_R);
 
-    /** Pattern for valid move input. */
-    private static final Pattern MOVE_PATTERN =
-            Pattern.compile("(?:.*-)?([a-e])([1-5])-([a-e])([1-5])$");
-
     /* Moves get generated profligately during the calculations of an AI,
      * so it's a good idea to make that operation efficient.  Instead of
      * relying on a Move constructor, which does a memory allocation with
@@ -51,10 +51,21 @@ class Move {
      * is at most one _staged object at any time, at most one call to move
      * may execute simultaneously.  Otherwise, two the methods may attempt
      * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
+     * will not work.  Therefore, creating a Move is synchronized, so that
+     * searches on other threads (such as an AI pondering on its opponent's
+     * time) may create Moves safely.  Each distinct Move is also numbered
+     * when it is first created, so that it may be stored compactly as an
+     * int (see id and byId).
+     *
+     * Searches on many threads look up existing Moves far more often than
+     * they create new ones, so lookups take no lock.  Once a Move has been
+     * created, it is published in append-only arrays whose elements are
+     * written once: _singles, indexed by source and destination, for
+     * single steps and jumps; the _prefixes of each jump J, indexed by
+     * source, for the jumps continuing with J; and _byId.  A Move is
+     * published only after it and the Moves created along with it (its
+     * images) are complete, so that a thread that finds it in these
+     * arrays sees all of its fields.
      */
 
     /** The move constructor, made private to prevent its use except in
@@ -65,9 +76,48 @@ class Move {
     /** A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      *  followed by NEXTJUMP, if this move is a jump. Assumes the column
      *  and row designations are valid and that NEXTJUMP is null for a
-     *  non-capturing move.  Not thread-safe. */
+     *  non-capturing move. */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
+        if (validSquare(col0, row0) && validSquare(col1, row1)) {
+            int from = index(col0, row0), to = index(col1, row1);
+            Move result =
+                nextJump == null ? _singles.get(from * SQUARES + to)
+                : nextJump._prefixes.get(from);
+            if (result != null && result._toIndex == to) {
+                return result;
+            }
+        }
+        return create(col0, row0, col1, row1, nextJump);
+    }
+
+    /** Return the Move from COL0 ROW0 to COL1 ROW1 followed by NEXTJUMP,
+     *  as for move, creating it if it does not yet exist. */
+    private static synchronized Move create(char col0, char row0,
+                                            char col1, char row1,
+                                            Move nextJump) {
+        _creating += 1;
+        try {
+            return intern(col0, row0, col1, row1, nextJump);
+        } finally {
+            _creating -= 1;
+            if (_creating == 0) {
+                for (Move mov : _unpublished) {
+                    mov.publish();
+                }
+                _unpublished.clear();
+            }
+        }
+    }
+
+    /** Return the Move from COL0 ROW0 to COL1 ROW1 followed by NEXTJUMP,
+     *  creating it (and adding it to _unpublished) if it does not yet
+     *  exist.  Called only from create.  A call from outside the factory
+     *  fails with IllegalArgumentException, leaving everything as it
+     *  was, unless there are ids left for the new Move and all of its
+     *  images, which are created along with it. */
+    private static Move intern(char col0, char row0, char col1, char row1,
+                               Move nextJump) {
         if (_staged == null) {
             _staged = new Move();
         }
@@ -77,15 +127,76 @@ class Move {
         } else if (!_staged.isJump() && nextJump != null) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
+        Move result = _internedMoves.get(_staged);
+        if (result == null) {
+            if (_creating == 1 && _count + IMAGES > MAX_MOVES) {
+                throw new IllegalArgumentException("too many distinct moves");
+            }
+            result = _staged;
             _staged = null;
+            _internedMoves.put(result, result);
+            result._id = _count;
+            _count += 1;
+            _unpublished.add(result);
+            result.setImages();
         }
         return result;
     }
 
-    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     *  Not thread-safe. */
+    /** Make me available to lookups that take no lock.  Called from the
+     *  factory, once I and my images are complete. */
+    private void publish() {
+        int chunk = _id >>> CHUNK_BITS;
+        if (_byId.get(chunk) == null) {
+            _byId.set(chunk, new AtomicReferenceArray<>(1 << CHUNK_BITS));
+        }
+        _byId.get(chunk).set(_id & ((1 << CHUNK_BITS) - 1), this);
+        if (_nextJump == null) {
+            _singles.set(_fromIndex * SQUARES + _toIndex, this);
+        } else if (_toIndex == _nextJump._fromIndex) {
+            _nextJump._prefixes.set(_fromIndex, this);
+        }
+    }
+
+    /** Return my image under the board symmetry SYM (see
+     *  Board.transform).  Since the symmetries are their own inverses,
+     *  image(SYM).image(SYM) is me. */
+    Move image(int sym) {
+        return _images[sym];
+    }
+
+    /** Fill in my images under all board symmetries.  Called from the
+     *  factory when I am first created. */
+    private void setImages() {
+        _images = new Move[IMAGES];
+        _images[0] = this;
+        for (int sym = 1; sym < _images.length; sym += 1) {
+            char c0 = _col0, c1 = _col1, r0 = _row0, r1 = _row1;
+            if ((sym & Board.MIRROR) != 0) {
+                c0 = (char) ('a' + 'e' - c0);
+                c1 = (char) ('a' + 'e' - c1);
+            }
+            if ((sym & Board.FLIP) != 0) {
+                r0 = (char) ('1' + '5' - r0);
+                r1 = (char) ('1' + '5' - r1);
+            }
+            _images[sym] =
+                move(c0, r0, c1, r1,
+                     _nextJump == null ? null : _nextJump.image(sym));
+        }
+    }
+
+    /** Return the Move whose id() is ID, or null if there is none. */
+    static Move byId(int id) {
+        if (id < 0 || (id >>> CHUNK_BITS) >= MAX_CHUNKS) {
+            return null;
+        }
+        AtomicReferenceArray<Move> chunk = _byId.get(id >>> CHUNK_BITS);
+        return chunk == null ? null
+            : chunk.get(id & ((1 << CHUNK_BITS) - 1));
+    }
+
+    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1). */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
@@ -121,6 +232,20 @@ class Move {
 
     }
 
+    /** Return the non-capturing single steps from the square with
+     *  linearized index K that lie along lines of the board, without
+     *  regard to the pieces on it.  The result must not be modified. */
+    static Move[] steps(int k) {
+        return STEPS[k];
+    }
+
+    /** Return the single jumps from the square with linearized index K
+     *  that lie along lines of the board, without regard to the pieces
+     *  on it.  The result must not be modified. */
+    static Move[] jumps(int k) {
+        return JUMPS[k];
+    }
+
     /** Return true iff (C, R) is a valid square designation. */
     static boolean validSquare(char c, char r) {
         return 'a' <= c && c <= 'e' && '1' <= r && r <= '5';
@@ -233,6 +358,12 @@ class Move {
         return _nextJump;
     }
 
+    /** Return my serial number: a small non-negative integer that differs
+     *  from that of every other Move. */
+    int id() {
+        return _id;
+    }
+
     @Override
     public int hashCode() {
         return (_fromIndex << 5) | _toIndex;
@@ -248,26 +379,54 @@ class Move {
                 && _toIndex == m._toIndex;
     }
 
-    /** Return the non-vestigial Move denoted by STR. */
-    static Move parseMove(String str) {
-        Matcher mat = MOVE_PATTERN.matcher(str);
-        int end;
+    /** Return true iff STR has the syntax of a move: two or more square
+     *  designations separated by '-'. */
+    static boolean isMoveDenotation(String str) {
+        int len = str.length();
+        if (len < 5 || (len - 2) % 3 != 0) {
+            return false;
+        }
+        for (int i = 0; i < len; i += 3) {
+            if (!validSquare(str.charAt(i), str.charAt(i + 1))
+                || (i + 2 < len && str.charAt(i + 2) != '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    /** Return the Move denoted by STR, which must satisfy
+     *  isMoveDenotation, or null if its squares do not form a single
+     *  step or a sequence of at most MAX_JUMPS jumps, or if the factory
+     *  can create no more Moves. */
+    static Move moveOf(String str) {
+        int last = str.length() - 2;
+        if (last > 3 * MAX_JUMPS) {
+            return null;
+        } else if (last > 3) {
+            for (int i = 0; i < last; i += 3) {
+                if (abs(str.charAt(i) - str.charAt(i + 3)) < 2
+                    && abs(str.charAt(i + 1) - str.charAt(i + 4)) < 2) {
+                    return null;
+                }
+            }
+        }
         Move result;
         result = null;
-        end = str.length();
-
-        while (end > 2) {
-            mat.region(0, end);
-            if (!mat.matches()) {
-                throw new IllegalArgumentException("bad move denotation");
+        try {
+            for (int i = last - 3; i >= 0; i -= 3) {
+                result = move(str.charAt(i), str.charAt(i + 1),
+                              str.charAt(i + 3), str.charAt(i + 4), result);
             }
-
-            result = move(mat.group(1).charAt(0), mat.group(2).charAt(0),
-                    mat.group(3).charAt(0), mat.group(4).charAt(0),
-                    result);
-            end = mat.end(2);
+        } catch (IllegalArgumentException excp) {
+            return null;
         }
+        return result;
+    }
+
+    /** Return the non-vestigial Move denoted by STR. */
+    static Move parseMove(String str) {
+        Move result = isMoveDenotation(str) ? moveOf(str) : null;
         if (result == null) {
             throw new IllegalArgumentException("bad move denotation");
         }
@@ -325,6 +484,17 @@ class Move {
      *  initial jump. */
     private Move _nextJump;
 
+    /** My serial number. */
+    private int _id;
+
+    /** My images under the board symmetries, indexed by symmetry. */
+    private Move[] _images;
+
+    /** The published jumps that continue with me, indexed by their
+     *  source squares. */
+    private final AtomicReferenceArray<Move> _prefixes =
+        new AtomicReferenceArray<>(SQUARES);
+
     /* Used for the Move factory. */
 
     /** Holds the next Move object to be added to _internedMoves.
@@ -335,7 +505,76 @@ class Move {
     /** The set of all distinct moves generated so far. */
     private static HashMap<Move, Move> _internedMoves = new HashMap<>();
 
+    /** Number of distinct moves generated so far. */
+    private static int _count;
+
+    /** Moves created by the current call of create, not yet
+     *  published. */
+    private static ArrayList<Move> _unpublished = new ArrayList<>();
+
+    /** Depth of nested calls of create. */
+    private static int _creating;
+
+    /** Number of squares. */
+    private static final int SQUARES = SIDE * SIDE;
+
+    /** Log base 2 of the number of moves in each chunk of _byId. */
+    private static final int CHUNK_BITS = 12;
+
+    /** Maximum number of chunks of _byId. */
+    private static final int MAX_CHUNKS = 1 << 10;
+
+    /** Maximum number of distinct Moves. */
+    private static final int MAX_MOVES = MAX_CHUNKS << CHUNK_BITS;
+
+    /** Number of images of a Move (including itself). */
+    private static final int IMAGES = (Board.MIRROR | Board.FLIP) + 1;
+
+    /** The published single steps and jumps, indexed by
+     *  SQUARES * (source) + (destination). */
+    private static final AtomicReferenceArray<Move> _singles =
+        new AtomicReferenceArray<>(SQUARES * SQUARES);
+
+    /** The published moves, in chunks of 2**CHUNK_BITS indexed by
+     *  id / 2**CHUNK_BITS, each indexed by id % 2**CHUNK_BITS.  Chunks are
+     *  created as needed. */
+    private static final AtomicReferenceArray<AtomicReferenceArray<Move>>
+        _byId = new AtomicReferenceArray<>(MAX_CHUNKS);
+
     /** The identity function on Moves. */
     static final Function<Move, Move> IDENTITY = k -> k;
 
+    /* The steps and single jumps from each square are computed once, when
+     * this class is initialized, so that move generation need not consult
+     * the Move factory for them.  They are listed by increasing row and
+     * then column of destination. */
+
+    /** STEPS[k] and JUMPS[k] are the results of steps(k) and jumps(k). */
+    private static final Move[][] STEPS = new Move[SIDE * SIDE][],
+        JUMPS = new Move[SIDE * SIDE][];
+
+    static {
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            STEPS[k] = lines(k, 1);
+            JUMPS[k] = lines(k, 2);
+        }
+    }
+
+    /** Return the moves from the square with linearized index K to the
+     *  squares DIST rows and/or columns away along lines of the board. */
+    private static Move[] lines(int k, int dist) {
+        ArrayList<Move> result = new ArrayList<>();
+        char col0 = col(k), row0 = row(k);
+        for (int dr = -dist; dr <= dist; dr += dist) {
+            for (int dc = -dist; dc <= dist; dc += dist) {
+                char col1 = (char) (col0 + dc), row1 = (char) (row0 + dr);
+                if ((dr != 0 || dc != 0) && validSquare(col1, row1)
+                    && (dr == 0 || dc == 0 || k % 2 == 0)) {
+                    result.add(move(col0, row0, col1, row1));
+                }
+            }
+        }
+        return result.toArray(new Move[result.size()]);
+    }
+
 }
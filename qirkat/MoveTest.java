@@ -40,5 +40,37 @@ public class MoveTest {
         assertEquals("a3-a5", parseMove("a3-a5").toString());
         assertEquals("a3-a5-c3", parseMove("a3-a5-c3").toString());
         assertEquals("a3-a5-c3-e1", parseMove("a3-a5-c3-e1").toString());
+        String jumps = "a1" + "-c1-a1".repeat(MAX_JUMPS / 2);
+        assertEquals(jumps, moveOf(jumps).toString());
+        assertNull(moveOf(jumps + "-c1"));
+    }
+
+    @Test
+    public void testConcurrentFactory() throws Exception {
+        String[] jumps = { "e1-c1-a1-a3-c3-e3-e5", "a1-a3-a5-c5-e5-e3",
+                           "c1-c3-c5-a5-a3-a1", "e5-e3-c3-c1-a1" };
+        Thread[] threads = new Thread[4];
+        Move[][] found = new Move[threads.length][jumps.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            int k = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < jumps.length; i += 1) {
+                    found[k][i] = parseMove(jumps[(i + k) % jumps.length]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < jumps.length; i += 1) {
+            Move m = parseMove(jumps[i]);
+            assertEquals(jumps[i], m.toString());
+            assertSame(m, byId(m.id()));
+            for (int t = 0; t < threads.length; t += 1) {
+                assertSame(m, found[t][(i - t + jumps.length)
+                                       % jumps.length]);
+            }
+        }
     }
 }
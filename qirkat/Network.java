@@ -0,0 +1,233 @@
+package qirkat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static qirkat.PieceColor.*;
+
+/** A small neural network that evaluates positions, designed to be cheap
+ *  to run on a CPU during a search.  Its inputs are one feature per
+ *  (square, piece color): feature K is a white piece on square K and
+ *  feature SQUARES + K a black piece there.  Its first layer sums the
+ *  weights of the features present, plus a bias, into an accumulator of
+ *  hidden() 16-bit values.  Its output is the sum over the hidden units
+ *  of their values, clipped to [0, ACTIVATION_LIMIT], times their output
+ *  weights, plus an output bias: a position value in the units of
+ *  Search.staticScore, positive when good for white.
+ *
+ *  Because a move changes only a few features, a Board that uses a
+ *  Network keeps its accumulator up to date as pieces change (see
+ *  Board.useNetwork), adding or subtracting one row of weights per
+ *  change, so that evaluating a position costs only the output layer.
+ *  All arithmetic on the accumulator is in 16 bits, in simple loops over
+ *  arrays, which the JIT compiler turns into vector instructions.
+ *
+ *  A Network is immutable, and may be shared by any number of Boards and
+ *  threads.  Its file form is a header of three big-endian ints (MAGIC,
+ *  hidden(), and the output bias) followed by big-endian shorts: the
+ *  hidden() first-layer biases, the weights of feature 0 to each hidden
+ *  unit, then those of feature 1, and so on, and finally the hidden()
+ *  output weights.
+ *  @author Henry Xu
+ */
+class Network {
+
+    /** Number of squares. */
+    static final int SQUARES = Move.SIDE * Move.SIDE;
+    /** Number of input features. */
+    static final int FEATURES = 2 * SQUARES;
+    /** Upper limit of the value of a hidden unit. */
+    static final int ACTIVATION_LIMIT = 127;
+
+    /** The first bytes of a network file. */
+    private static final int MAGIC = 0x514B4E4E;
+    /** Largest number of hidden units accepted from a file. */
+    private static final int MAX_HIDDEN = 4096;
+
+    /** A network with HIDDEN hidden units, first-layer biases BIASES,
+     *  first-layer WEIGHTS (the weight of feature F to unit I being
+     *  WEIGHTS[F * HIDDEN + I]), output weights OUTPUTWEIGHTS, and output
+     *  bias OUTPUTBIAS.  The arrays are copied. */
+    Network(int hidden, short[] biases, short[] weights,
+            short[] outputWeights, int outputBias) {
+        if (hidden <= 0 || biases.length != hidden
+            || weights.length != FEATURES * hidden
+            || outputWeights.length != hidden) {
+            throw new IllegalArgumentException("inconsistent network size");
+        }
+        _hidden = hidden;
+        _biases = biases.clone();
+        _weights = weights.clone();
+        _outputWeights = outputWeights.clone();
+        _outputBias = outputBias;
+    }
+
+    /** Return the network in file NAME. */
+    static Network load(String name) throws IOException {
+        try (DataInputStream in =
+             new DataInputStream(new BufferedInputStream(
+                                     new FileInputStream(name)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a network file");
+            }
+            int hidden = in.readInt();
+            if (hidden <= 0 || hidden > MAX_HIDDEN) {
+                throw new IOException("bad network size");
+            }
+            int outputBias = in.readInt();
+            short[] biases = readShorts(in, hidden),
+                weights = readShorts(in, FEATURES * hidden),
+                outputWeights = readShorts(in, hidden);
+            return new Network(hidden, biases, weights, outputWeights,
+                               outputBias);
+        } catch (EOFException excp) {
+            throw new IOException("truncated network file");
+        }
+    }
+
+    /** Write me to file NAME, in the form read by load. */
+    void save(String name) throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                                      new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(_hidden);
+            out.writeInt(_outputBias);
+            writeShorts(out, _biases);
+            writeShorts(out, _weights);
+            writeShorts(out, _outputWeights);
+        }
+    }
+
+    /** Return a network that reproduces the material and advancement
+     *  terms of Search.staticScore: one hidden unit per feature, each
+     *  weighted by the value that staticScore gives a piece of that
+     *  color on that square.  It is a starting point for training, and a
+     *  check on the evaluator. */
+    static Network heuristic() {
+        int hidden = FEATURES;
+        short[] biases = new short[hidden],
+            weights = new short[FEATURES * hidden],
+            outputWeights = new short[hidden];
+        for (int k = 0; k < SQUARES; k += 1) {
+            weights[k * hidden + k] = 1;
+            weights[(SQUARES + k) * hidden + SQUARES + k] = 1;
+            int row = k / Move.SIDE;
+            outputWeights[k] =
+                (short) (1000 + (Move.SIDE - row) * Move.SIDE * 100);
+            outputWeights[SQUARES + k] =
+                (short) -(1000 + (row + 1) * Move.SIDE * 100);
+        }
+        return new Network(hidden, biases, weights, outputWeights, 0);
+    }
+
+    /** Return my number of hidden units. */
+    int hidden() {
+        return _hidden;
+    }
+
+    /** Return the feature for a piece of color V on square K, or -1 if V
+     *  is not a piece. */
+    static int feature(int k, PieceColor v) {
+        return v == WHITE ? k : v == BLACK ? SQUARES + k : -1;
+    }
+
+    /** Return a new accumulator for a position with white pieces on the
+     *  squares in mask WHITE and black pieces on those in BLACK. */
+    short[] accumulator(long white, long black) {
+        short[] acc = _biases.clone();
+        for (long m = white; m != 0; m &= m - 1) {
+            add(acc, Long.numberOfTrailingZeros(m));
+        }
+        for (long m = black; m != 0; m &= m - 1) {
+            add(acc, SQUARES + Long.numberOfTrailingZeros(m));
+        }
+        return acc;
+    }
+
+    /** Update accumulator ACC for a change of the contents of square K
+     *  from OLD to V. */
+    void update(short[] acc, int k, PieceColor old, PieceColor v) {
+        int removed = feature(k, old), added = feature(k, v);
+        if (removed >= 0 && added >= 0) {
+            replace(acc, removed, added);
+        } else if (removed >= 0) {
+            subtract(acc, removed);
+        } else if (added >= 0) {
+            add(acc, added);
+        }
+    }
+
+    /** Return the value of the position whose accumulator is ACC. */
+    int evaluate(short[] acc) {
+        int sum = 0;
+        for (int i = 0; i < _hidden; i += 1) {
+            int a = Math.min(Math.max(acc[i], 0), ACTIVATION_LIMIT);
+            sum += a * _outputWeights[i];
+        }
+        return sum + _outputBias;
+    }
+
+    /** Add the weights of feature F to ACC. */
+    private void add(short[] acc, int f) {
+        short[] w = _weights;
+        int base = f * _hidden;
+        for (int i = 0; i < _hidden; i += 1) {
+            acc[i] += w[base + i];
+        }
+    }
+
+    /** Subtract the weights of feature F from ACC. */
+    private void subtract(short[] acc, int f) {
+        short[] w = _weights;
+        int base = f * _hidden;
+        for (int i = 0; i < _hidden; i += 1) {
+            acc[i] -= w[base + i];
+        }
+    }
+
+    /** Subtract the weights of feature REMOVED from ACC and add those of
+     *  feature ADDED, in one pass. */
+    private void replace(short[] acc, int removed, int added) {
+        short[] w = _weights;
+        int r = removed * _hidden, a = added * _hidden;
+        for (int i = 0; i < _hidden; i += 1) {
+            acc[i] += w[a + i] - w[r + i];
+        }
+    }
+
+    /** Return N shorts read from IN. */
+    private static short[] readShorts(DataInputStream in, int n)
+        throws IOException {
+        short[] result = new short[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = in.readShort();
+        }
+        return result;
+    }
+
+    /** Write the shorts in DATA to OUT. */
+    private static void writeShorts(DataOutputStream out, short[] data)
+        throws IOException {
+        for (short s : data) {
+            out.writeShort(s);
+        }
+    }
+
+    /** Number of hidden units. */
+    private final int _hidden;
+    /** First-layer biases. */
+    private final short[] _biases;
+    /** First-layer weights, by feature and then by hidden unit. */
+    private final short[] _weights;
+    /** Output weights. */
+    private final short[] _outputWeights;
+    /** Output bias. */
+    private final int _outputBias;
+}
@@ -21,8 +21,8 @@ abstract class Player {
         return _game;
     }
 
-    /** Return a view of the board I am playing on. */
-    Board board() {
+    /** Return a snapshot of the board I am playing on. */
+    Position board() {
         return _game.board();
     }
 
@@ -31,6 +31,11 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Called when the game I am playing in ends or is abandoned.  By
+     *  default, does nothing. */
+    void endGame() {
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
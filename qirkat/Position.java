@@ -0,0 +1,140 @@
+package qirkat;
+
+import static qirkat.Move.index;
+
+/** An immutable snapshot of a Board: its pieces, the player to move, and
+ *  the moves that led to it.  A Position takes constant time and space to
+ *  make from a Board, because the pieces are packed into a Board.key()
+ *  and the moves are a History, which Boards and Positions share rather
+ *  than copy.  Positions are what a Game shows its Players, which must
+ *  not change the game's Board; a Player that wants to explore moves
+ *  makes a new Board from the Position.
+ *  @author Henry Xu
+ */
+final class Position {
+
+    /** The position whose pieces and player to move are encoded by KEY,
+     *  as by Board.key(), reached by the moves HISTORY, and in which the
+     *  game is over iff GAMEOVER. */
+    Position(long key, History history, boolean gameOver) {
+        _key = key;
+        _history = history;
+        _gameOver = gameOver;
+    }
+
+    /** Return my pieces and player to move, as a Board.key(). */
+    long key() {
+        return _key;
+    }
+
+    /** Return the moves that led to me. */
+    History history() {
+        return _history;
+    }
+
+    /** Return true iff the player to move has no moves. */
+    boolean gameOver() {
+        return _gameOver;
+    }
+
+    /** Return the player to move. */
+    PieceColor whoseMove() {
+        return Board.whoseMove(_key);
+    }
+
+    /** Return the contents of the square at linearized index K. */
+    PieceColor get(int k) {
+        return Board.get(_key, k);
+    }
+
+    /** Return the contents of square C R, where 'a' <= C <= 'e', and
+     *  '1' <= R <= '5'. */
+    PieceColor get(char c, char r) {
+        return get(index(c, r));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Position && ((Position) obj)._key == _key
+            && ((Position) obj)._gameOver == _gameOver;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_key);
+    }
+
+    @Override
+    public String toString() {
+        return new Board(this).toString();
+    }
+
+    /** A persistent list of the moves of a game, most recent first.
+     *  Adding a move makes a new History that shares the old one, which
+     *  is unchanged, so that Boards and Positions can share Histories
+     *  freely. */
+    static final class History {
+
+        /** The History of a game with no moves. */
+        static final History EMPTY = new History(null, 0, null, 0);
+
+        /** The History PREVIOUS followed by LAST, which captured the
+         *  pieces on the squares in mask CAPTURED, of length SIZE. */
+        private History(Move last, int captured, History previous,
+                        int size) {
+            _last = last;
+            _captured = captured;
+            _previous = previous;
+            _size = size;
+        }
+
+        /** Return my moves followed by MOV, which captured the pieces on
+         *  the squares in mask CAPTURED (bit K for linearized index K). */
+        History add(Move mov, int captured) {
+            return new History(mov, captured, this, _size + 1);
+        }
+
+        /** Return true iff I have no moves. */
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /** Return my number of moves. */
+        int size() {
+            return _size;
+        }
+
+        /** Return my most recent move.  Requires !isEmpty(). */
+        Move last() {
+            return _last;
+        }
+
+        /** Return the mask of the squares whose pieces my most recent
+         *  move captured.  Requires !isEmpty(). */
+        int captured() {
+            return _captured;
+        }
+
+        /** Return my moves before the most recent.  Requires
+         *  !isEmpty(). */
+        History previous() {
+            return _previous;
+        }
+
+        /** My most recent move. */
+        private final Move _last;
+        /** Squares captured by _last. */
+        private final int _captured;
+        /** My moves before _last. */
+        private final History _previous;
+        /** My number of moves. */
+        private final int _size;
+    }
+
+    /** My pieces and player to move, as a Board.key(). */
+    private final long _key;
+    /** The moves that led to me. */
+    private final History _history;
+    /** True iff the player to move has no moves. */
+    private final boolean _gameOver;
+}
@@ -0,0 +1,287 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.*;
+import static qirkat.PieceColor.*;
+
+/** An on-disk database of positions, keyed by Board.key(), recording how
+ *  often each position occurred in recorded games, who went on to win,
+ *  and a move played from it.
+ *
+ *  Positions that are images of each other under the symmetries of the
+ *  board (see Board.transform) share one record, under their canonical
+ *  key and in the canonical orientation; add and lookup translate moves
+ *  and (for a color-exchanging symmetry) winners to and from it.
+ *
+ *  The file is an open-addressed hash table of fixed-width records,
+ *  which is memory-mapped in segments of at most 1 GB, so that the
+ *  positions themselves never occupy the Java heap and the operating
+ *  system's page cache decides what is resident.  The table is created
+ *  with a fixed number of slots (a power of 2), and each record occupies
+ *  RECORD_SIZE bytes:
+ *      bytes  0- 7:  the position key, with bit 63 set (0 in an empty slot)
+ *      bytes  8-11:  number of games in which the position occurred
+ *      bytes 12-15:  number of those games won by white
+ *      bytes 16-19:  number of those games won by black
+ *      bytes 20-31:  a move from the position, in the form described in
+ *                    GameRecord, padded with GameRecord.END.  It is a move
+ *                    played by a player who went on to win, if any was.
+ *  A header record precedes the table.
+ *  @author Henry Xu
+ */
+class PositionStore implements Closeable {
+
+    /** Size of one record (bytes). */
+    static final int RECORD_SIZE = 32;
+    /** Default number of slots in a new store. */
+    static final long DEFAULT_CAPACITY = 1L << 20;
+
+    /** The first bytes of a store file.  (Stores written before keys
+     *  were canonical began with 0x514B5053.) */
+    private static final int MAGIC = 0x514B5043;
+    /** Size of the header at the start of the file (bytes). */
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    /** Log base 2 of the number of slots in one mapped segment. */
+    private static final int SEGMENT_SHIFT = 25;
+    /** Flag marking an occupied slot. */
+    private static final long OCCUPIED = 1L << 63;
+    /** Offsets of the record fields. */
+    private static final int
+        KEY = 0, GAMES = 8, WHITE_WINS = 12, BLACK_WINS = 16, MOVE = 20;
+    /** Number of bytes available for a move. */
+    private static final int MOVE_SIZE = RECORD_SIZE - MOVE;
+
+    /** The store in file FILENAME, which is created with room for
+     *  CAPACITY positions (rounded up to a power of 2) if it does not
+     *  exist. */
+    PositionStore(String fileName, long capacity) throws IOException {
+        _channel = FileChannel.open(Paths.get(fileName),
+                                    CREATE, READ, WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (_channel.size() == 0) {
+            _capacity = Long.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+            writeHeader();
+        } else {
+            _channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE
+                || header.getInt() != MAGIC) {
+                throw new IOException("not a position store");
+            }
+            _capacity = header.getLong();
+            _size = header.getLong();
+            if (Long.bitCount(_capacity) != 1) {
+                throw new IOException("corrupt position store");
+            }
+        }
+        long segmentSlots = 1L << SEGMENT_SHIFT;
+        _segments = new MappedByteBuffer[
+            (int) ((_capacity + segmentSlots - 1) >> SEGMENT_SHIFT)];
+        for (int s = 0; s < _segments.length; s += 1) {
+            long slots = Math.min(segmentSlots, _capacity - s * segmentSlots);
+            _segments[s] =
+                _channel.map(READ_WRITE,
+                             HEADER_SIZE + s * segmentSlots * RECORD_SIZE,
+                             slots * RECORD_SIZE);
+        }
+    }
+
+    /** Return the number of slots in the table. */
+    long capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of distinct positions stored. */
+    long size() {
+        return _size;
+    }
+
+    /** Record that the position with key KEY occurred in a game that was
+     *  won by WINNER (EMPTY if nobody), and that MOV (null if none) was
+     *  played from it. */
+    void add(long key, Move mov, PieceColor winner) throws IOException {
+        int sym = Board.symmetry(key);
+        key = Board.transform(key, sym);
+        if (mov != null) {
+            mov = mov.image(sym);
+        }
+        if ((sym & Board.FLIP) != 0 && winner.isPiece()) {
+            winner = winner.opposite();
+        }
+        long slot = find(key);
+        ByteBuffer seg = segment(slot);
+        int off = offset(slot);
+        if (seg.getLong(off + KEY) == 0) {
+            if (_size >= _capacity - _capacity / 8) {
+                throw new IOException("position store is full");
+            }
+            seg.putLong(off + KEY, key | OCCUPIED);
+            seg.put(off + MOVE, (byte) GameRecord.END);
+            _size += 1;
+        }
+        seg.putInt(off + GAMES, seg.getInt(off + GAMES) + 1);
+        if (winner == WHITE) {
+            seg.putInt(off + WHITE_WINS, seg.getInt(off + WHITE_WINS) + 1);
+        } else if (winner == BLACK) {
+            seg.putInt(off + BLACK_WINS, seg.getInt(off + BLACK_WINS) + 1);
+        }
+        if (mov != null
+            && ((seg.get(off + MOVE) & 0xFF) == GameRecord.END
+                || winner == Board.whoseMove(key))) {
+            int len = GameRecord.encode(mov, _codes, 0);
+            for (int i = 0; i < MOVE_SIZE; i += 1) {
+                seg.put(off + MOVE + i,
+                        i < len ? _codes[i] : (byte) GameRecord.END);
+            }
+        }
+    }
+
+    /** Add all positions in the games recorded in the file FILENAME, as
+     *  written by GameRecordWriter.  Return the number of games read. */
+    long importGames(String fileName) throws IOException {
+        Board board = new Board();
+        try (GameRecordReader games = new GameRecordReader(fileName)) {
+            while (games.next()) {
+                long key = games.initialKey();
+                board.setPieces(Board.pieces(key), Board.whoseMove(key));
+                PieceColor winner = games.winner();
+                for (int k = 0; k < games.moveCount(); k += 1) {
+                    Move mov = games.move(k);
+                    add(board.key(), mov, winner);
+                    board.makeMove(mov);
+                }
+                add(board.key(), null, winner);
+            }
+            return games.gamesRead();
+        } catch (IllegalArgumentException excp) {
+            throw new IOException("bad game record");
+        }
+    }
+
+    /** Return the entry for the position with key KEY, or null if it is
+     *  not in the store. */
+    Entry lookup(long key) {
+        int sym = Board.symmetry(key);
+        long slot = find(Board.transform(key, sym));
+        ByteBuffer seg = segment(slot);
+        int off = offset(slot);
+        if (seg.getLong(off + KEY) == 0) {
+            return null;
+        }
+        int len;
+        for (len = 0; len < MOVE_SIZE; len += 1) {
+            _codes[len] = seg.get(off + MOVE + len);
+            if ((_codes[len] & 0xFF) == GameRecord.END) {
+                break;
+            }
+        }
+        Move mov = len == 0 ? null : GameRecord.decode(_codes, 0, len);
+        int whiteWins = seg.getInt(off + WHITE_WINS),
+            blackWins = seg.getInt(off + BLACK_WINS);
+        if ((sym & Board.FLIP) != 0) {
+            int t = whiteWins;
+            whiteWins = blackWins;
+            blackWins = t;
+        }
+        return new Entry(seg.getInt(off + GAMES), whiteWins, blackWins,
+                         mov == null ? null : mov.image(sym));
+    }
+
+    /** Write all changes back to the file. */
+    void flush() throws IOException {
+        writeHeader();
+        for (MappedByteBuffer seg : _segments) {
+            seg.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        _channel.close();
+    }
+
+    /** Return the slot holding KEY, or the empty slot where it belongs if
+     *  it is not present. */
+    private long find(long key) {
+        long mask = _capacity - 1;
+        long target = key | OCCUPIED;
+        long slot = (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        while (true) {
+            long k = segment(slot).getLong(offset(slot) + KEY);
+            if (k == 0 || k == target) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Return the mapped segment containing SLOT. */
+    private ByteBuffer segment(long slot) {
+        return _segments[(int) (slot >>> SEGMENT_SHIFT)];
+    }
+
+    /** Return the offset of SLOT within its segment. */
+    private static int offset(long slot) {
+        return (int) (slot & ((1L << SEGMENT_SHIFT) - 1)) * RECORD_SIZE;
+    }
+
+    /** Write the header to the start of the file. */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(_capacity).putLong(_size);
+        header.clear();
+        _channel.write(header, 0);
+    }
+
+    /** The statistics recorded for one position. */
+    static class Entry {
+        /** An entry for a position that occurred in GAMES games, of which
+         *  WHITEWINS were won by white and BLACKWINS by black, and from
+         *  which MOV was played (null if none). */
+        Entry(int games, int whiteWins, int blackWins, Move mov) {
+            _games = games;
+            _whiteWins = whiteWins;
+            _blackWins = blackWins;
+            _move = mov;
+        }
+
+        /** Return the number of games in which the position occurred. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of those games won by WHO. */
+        int wins(PieceColor who) {
+            return who == WHITE ? _whiteWins : who == BLACK ? _blackWins : 0;
+        }
+
+        /** Return the recorded move from the position, or null. */
+        Move move() {
+            return _move;
+        }
+
+        /** Game and win counts. */
+        private final int _games, _whiteWins, _blackWins;
+        /** Recorded move. */
+        private final Move _move;
+    }
+
+    /** The store's file. */
+    private final FileChannel _channel;
+    /** The mapped table, in segments of 2**SEGMENT_SHIFT slots. */
+    private final MappedByteBuffer[] _segments;
+    /** Number of slots. */
+    private final long _capacity;
+    /** Number of occupied slots. */
+    private long _size;
+    /** Scratch space for encoded moves. */
+    private final byte[] _codes = new byte[MOVE_SIZE];
+}
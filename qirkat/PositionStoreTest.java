@@ -0,0 +1,68 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of the on-disk position store.
+ *  @author Henry Xu
+ */
+public class PositionStoreTest {
+
+    private static final String[] GAME1 =
+    { "c2-c3", "c4-c2",
+      "c1-c3", "a3-c1",
+    };
+
+    @Test
+    public void testImportAndLookup() throws IOException {
+        File games = File.createTempFile("qirkat", ".rec");
+        File store = File.createTempFile("qirkat", ".pos");
+        games.deleteOnExit();
+        store.deleteOnExit();
+        store.delete();
+
+        Board b = new Board();
+        try (GameRecordWriter out = new GameRecordWriter(games.getPath())) {
+            for (int i = 0; i < 2; i += 1) {
+                b.clear();
+                out.startGame(b, i);
+                for (String s : GAME1) {
+                    Move mov = Move.parseMove(s);
+                    b.makeMove(mov);
+                    out.recordMove(mov);
+                }
+                out.endGame(i == 0 ? BLACK : EMPTY);
+            }
+        }
+
+        try (PositionStore pos = new PositionStore(store.getPath(), 60)) {
+            assertEquals(64, pos.capacity());
+            assertEquals(2, pos.importGames(games.getPath()));
+            assertEquals(GAME1.length + 1, pos.size());
+        }
+        try (PositionStore pos = new PositionStore(store.getPath(), 0)) {
+            assertEquals(64, pos.capacity());
+            PositionStore.Entry start = pos.lookup(new Board().key());
+            assertNotNull(start);
+            assertEquals(2, start.games());
+            assertEquals(0, start.wins(WHITE));
+            assertEquals(1, start.wins(BLACK));
+            assertEquals("c2-c3", start.move().toString());
+            PositionStore.Entry flipped =
+                pos.lookup(Board.transform(new Board().key(), Board.FLIP));
+            assertEquals(2, flipped.games());
+            assertEquals(1, flipped.wins(WHITE));
+            assertEquals("c4-c3", flipped.move().toString());
+            PositionStore.Entry last = pos.lookup(b.key());
+            assertNull(last.move());
+            assertNull(pos.lookup(0));
+        }
+    }
+
+}
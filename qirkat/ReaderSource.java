@@ -4,6 +4,8 @@ import java.io.BufferedReader;
 import java.io.Reader;
 import java.io.IOException;
 
+import static qirkat.GameException.error;
+
 /** Provides command input from a Reader.
  *  @author P. N. Hilfinger
  */
@@ -12,8 +14,16 @@ class ReaderSource implements CommandSource {
     /** A new source that reads from INPUT and prints prompts
      *  if SHOULDPROMPT. */
     ReaderSource(Reader input, boolean shouldPrompt) {
+        this(input, shouldPrompt, 0);
+    }
+
+    /** A new source that reads from INPUT, prints prompts if
+     *  SHOULDPROMPT, and rejects lines longer than MAXLENGTH characters
+     *  (if MAXLENGTH is positive) without storing them. */
+    ReaderSource(Reader input, boolean shouldPrompt, int maxLength) {
         _input = new BufferedReader(input);
         _shouldPrompt = shouldPrompt;
+        _maxLength = maxLength;
     }
 
     @Override
@@ -27,7 +37,8 @@ class ReaderSource implements CommandSource {
                 System.out.print(prompt);
                 System.out.flush();
             }
-            String result = _input.readLine();
+            String result =
+                _maxLength > 0 ? readLimitedLine() : _input.readLine();
             if (result == null) {
                 _input.close();
             }
@@ -37,9 +48,40 @@ class ReaderSource implements CommandSource {
         }
     }
 
+    /** Return the next line of input, without its terminator, or null
+     *  at the end of input.  Throws a GameException, having skipped the
+     *  line, if it is longer than _maxLength. */
+    private String readLimitedLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean tooLong = false;
+        int c;
+        while (true) {
+            c = _input.read();
+            if (c == -1 || c == '\n') {
+                break;
+            } else if (line.length() < _maxLength) {
+                line.append((char) c);
+            } else if (c != '\r') {
+                tooLong = true;
+            }
+        }
+        if (tooLong) {
+            throw error("Line too long");
+        } else if (c == -1 && line.length() == 0) {
+            return null;
+        }
+        int len = line.length();
+        if (len > 0 && line.charAt(len - 1) == '\r') {
+            line.setLength(len - 1);
+        }
+        return line.toString();
+    }
+
     /** Input source. */
     private BufferedReader _input;
     /** True if we request a prompt for each getLine. */
     private boolean _shouldPrompt;
+    /** Longest line accepted, or 0 if there is no limit. */
+    private int _maxLength;
 }
 
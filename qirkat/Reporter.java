@@ -1,5 +1,7 @@
 package qirkat;
 
+import java.util.List;
+
 /** An object that reports errors or messages.
  *  @author P. N. Hilfinger
  */
@@ -17,4 +19,15 @@ interface Reporter {
      *  formed from FORMAT and OPERANDS as for String.format. */
     void moveMsg(String format, Object... operands);
 
+    /** Report VARIATIONS, the best moves found by analyzing the position
+     *  whose Board.key() is POSITION, best first.  Reporters that show
+     *  only text may ignore this, since the analysis is also reported
+     *  by moveMsg. */
+    default void analysisMsg(long position,
+                             List<Search.Variation> variations) {
+    }
+
+    /** Make sure that all messages reported so far have been displayed. */
+    void flush();
+
 }
@@ -0,0 +1,116 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/** Provides command input from a script file.  The file is read through
+ *  a FileChannel in large blocks, so that scripts of any size may be
+ *  read at close to the speed of the disk, and the lines returned are
+ *  cleaned as for CommandSources.
+ *  @author Henry Xu
+ */
+class ScriptSource implements CommandSource, Closeable {
+
+    /** Size of the input buffer (bytes). */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** A source that reads the file named FILENAME. */
+    ScriptSource(String fileName) throws IOException {
+        _channel = FileChannel.open(Paths.get(fileName), READ);
+        _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _buffer.limit(0);
+    }
+
+    @Override
+    public String getLine(String unused) {
+        try {
+            return nextLine();
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the next non-blank line of the file, with comments and
+     *  leading and trailing whitespace removed, or null at the end of the
+     *  file. */
+    String nextLine() throws IOException {
+        while (true) {
+            String line = nextRawLine();
+            if (line == null) {
+                return null;
+            }
+            line = CommandSources.clean(line);
+            if (!line.isEmpty()) {
+                return line;
+            }
+        }
+    }
+
+    /** Return the number of the line last returned by nextLine (numbering
+     *  from 1). */
+    long lineNumber() {
+        return _lineNumber;
+    }
+
+    /** Return the size of the file (bytes). */
+    long size() throws IOException {
+        return _channel.size();
+    }
+
+    /** Return the number of bytes of the file read so far. */
+    long position() throws IOException {
+        return _channel.position() - _buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /** Return the next line of the file, without its terminator, or null
+     *  at the end of the file. */
+    private String nextRawLine() throws IOException {
+        int len;
+        len = 0;
+        while (true) {
+            if (!_buffer.hasRemaining()) {
+                _buffer.clear();
+                int n = _channel.read(_buffer);
+                _buffer.flip();
+                if (n < 0) {
+                    if (len == 0) {
+                        return null;
+                    }
+                    break;
+                }
+            }
+            byte b = _buffer.get();
+            if (b == '\n') {
+                break;
+            }
+            if (len == _line.length) {
+                _line = Arrays.copyOf(_line, 2 * len);
+            }
+            _line[len] = b;
+            len += 1;
+        }
+        _lineNumber += 1;
+        return new String(_line, 0, len, UTF_8);
+    }
+
+    /** The file being read. */
+    private final FileChannel _channel;
+    /** Holds the unread portion of the most recently read block. */
+    private final ByteBuffer _buffer;
+    /** Accumulates the bytes of the current line. */
+    private byte[] _line = new byte[256];
+    /** Number of lines read. */
+    private long _lineNumber;
+}
@@ -0,0 +1,638 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Move.*;
+import static qirkat.TranspositionTable.*;
+import static qirkat.Search.Pruning.*;
+
+/** A minimax game-tree search with alpha-beta pruning.  Results are
+ *  recorded in the TranspositionTable of a SearchState, which both
+ *  shortcuts the search of positions reached more than once and supplies
+ *  the best move found previously to be tried first; the remaining moves
+ *  are tried in order of their history scores.  A Search may be used by
+ *  only one thread at a time, but any number of Searches may share a
+ *  SearchState.
+ *  @author Henry Xu
+ */
+class Search {
+
+    /** A position magnitude indicating a win (for white if positive, black
+     *  if negative). */
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /** A magnitude greater than a normal value. */
+    static final int INFTY = Integer.MAX_VALUE;
+
+    /** The value of having a capture available on one's move, which the
+     *  other player cannot prevent. */
+    static final int CAPTURE_THREAT_VALUE = 500;
+
+    /** A deadline indicating that there is none. */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Number of positions searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /** Selective-search techniques, which trade the certainty of a
+     *  full-width search for depth, and which a SearchState may enable
+     *  or not.  None applies at the root or in positions where a capture
+     *  is possible. */
+    static enum Pruning {
+        /** Search quiet moves late in the move order one level less
+         *  deeply, and search again at full depth any whose reduced
+         *  search makes it the best so far. */
+        LATE_MOVE_REDUCTION("lmr"),
+        /** In positions one or two levels from the frontier whose static
+         *  value is far outside the window, search only the first move,
+         *  assuming that no quiet move can recover the difference. */
+        FUTILITY("futility"),
+        /** In positions two levels from the frontier whose static value
+         *  is very far outside the window, search one level less. */
+        RAZORING("razoring");
+
+        /** A technique called NAME in commands. */
+        Pruning(String name) {
+            _name = name;
+        }
+
+        /** Return the technique called NAME in commands, or null if
+         *  none is. */
+        static Pruning named(String name) {
+            for (Pruning p : values()) {
+                if (p._name.equals(name)) {
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        /** Return my name in commands. */
+        String commandName() {
+            return _name;
+        }
+
+        /** My name in commands. */
+        private final String _name;
+    }
+
+    /** A move from the root of an analysis, with its value (positive if
+     *  good for white) and the principal variation that it begins. */
+    static class Variation {
+
+        /** A variation that starts with LINE.get(0) and has value
+         *  VALUE. */
+        Variation(int value, List<Move> line) {
+            _value = value;
+            _line = line;
+        }
+
+        /** Return my first move. */
+        Move move() {
+            return _line.get(0);
+        }
+
+        /** Return my value. */
+        int value() {
+            return _value;
+        }
+
+        /** Return my moves, starting with move(). */
+        List<Move> line() {
+            return _line;
+        }
+
+        /** My value. */
+        private final int _value;
+        /** My moves. */
+        private final List<Move> _line;
+    }
+
+    /** Levels from the frontier at which razoring applies. */
+    private static final int RAZOR_DEPTH = 2;
+    /** Margin for razoring. */
+    private static final int RAZOR_MARGIN = 3000;
+    /** Greatest number of levels from the frontier at which futility
+     *  pruning applies. */
+    private static final int FUTILITY_DEPTH = 2;
+    /** Margin for futility pruning per level from the frontier. */
+    private static final int FUTILITY_MARGIN = 1500;
+    /** Least number of levels from the frontier at which late moves are
+     *  reduced. */
+    private static final int LMR_MIN_DEPTH = 3;
+    /** Number of moves in each position searched without reduction. */
+    private static final int LMR_FULL_MOVES = 3;
+
+    /** A new Search that uses and adds to STATE. */
+    Search(SearchState state) {
+        _state = state;
+        _table = state.table();
+    }
+
+    /** Return the best move to play for the player to move on BOARD,
+     *  searching to DEPTH levels, or null if there is no move or the search
+     *  was stopped.  BOARD is restored to its original state on return. */
+    Move findMove(Board board, int depth) {
+        return findMove(board, depth, NO_DEADLINE);
+    }
+
+    /** Return the best move to play for the player to move on BOARD,
+     *  assuming there is one, searching to at most DEPTH levels and
+     *  finishing by time DEADLINE (as given by System.nanoTime), or
+     *  return null if the search was stopped.  With a deadline, the
+     *  search deepens iteratively from one level, and the result is the
+     *  move found by the deepest search completed in time (or the best
+     *  guess available, if not even that one was).  BOARD is restored to
+     *  its original state on return.  Positions are evaluated with the
+     *  Network of my state, if it has one. */
+    Move findMove(Board board, int depth, long deadline) {
+        Network previous = board.network();
+        board.useNetwork(_state.network());
+        _pruning = _state.pruning();
+        try {
+            return deepen(board, depth, deadline);
+        } finally {
+            board.useNetwork(previous);
+        }
+    }
+
+    /** Perform the search described by findMove(BOARD, DEPTH,
+     *  DEADLINE), with BOARD's network already set. */
+    private Move deepen(Board board, int depth, long deadline) {
+        _state.startSearch();
+        _deadline = deadline;
+        _expired = false;
+        Move best;
+        best = null;
+        int searched;
+        searched = 0;
+        int d = deadline == NO_DEADLINE ? depth : 1;
+        _valueFound = evaluate(board);
+        for (; d <= depth && !_expired; d += 1) {
+            _lastFoundMove = null;
+            int value;
+            if (board.whoseMove() == WHITE) {
+                value = findMove(board, d, true, 1, -INFTY, INFTY);
+            } else {
+                value = findMove(board, d, true, -1, -INFTY, INFTY);
+            }
+            if (_stopped) {
+                return null;
+            }
+            if (!_expired) {
+                best = _lastFoundMove;
+                searched = d;
+                _valueFound = value;
+            }
+        }
+        _depthReached = searched;
+        _deadline = NO_DEADLINE;
+        if (best == null) {
+            best = tableMove(board);
+        }
+        if (best == null) {
+            best = board.getMoves().get(0);
+        }
+        _state.savePrincipalVariation(board, searched);
+        return best;
+    }
+
+    /** Return the best K moves for the player to move on BOARD (or all
+     *  of them, if there are fewer), best first, each with its value and
+     *  principal variation, searching to at most DEPTH levels and
+     *  finishing by time DEADLINE, as for findMove.  Returns an empty
+     *  list if the game is over, if the search was stopped, or if not
+     *  even a one-level search was completed in time.  BOARD is restored
+     *  to its original state on return. */
+    List<Variation> analyze(Board board, int k, int depth, long deadline) {
+        Network previous = board.network();
+        board.useNetwork(_state.network());
+        _pruning = _state.pruning();
+        try {
+            return analyzeRoot(board, k, depth, deadline);
+        } finally {
+            board.useNetwork(previous);
+        }
+    }
+
+    /** Perform the search described by analyze(BOARD, K, DEPTH,
+     *  DEADLINE), with BOARD's network already set.  All root moves are
+     *  searched in one pass per depth: each with a window that admits
+     *  only values better than the K-th best found so far at that depth,
+     *  so that the values of the best K are exact while the rest cost no
+     *  more than they would in an ordinary search.  Each depth searches
+     *  the best moves of the one before it first. */
+    private List<Variation> analyzeRoot(Board board, int k, int depth,
+                                        long deadline) {
+        List<Variation> result = new ArrayList<>();
+        int searched = 0;
+        _depthReached = 0;
+        if (board.gameOver()) {
+            return result;
+        }
+        _state.startSearch();
+        _deadline = deadline;
+        _expired = false;
+        int sense = board.whoseMove() == WHITE ? 1 : -1;
+        ArrayList<Move> moves = board.getMoves();
+        order(moves, tableMove(board), board.whoseMove());
+        int d = deadline == NO_DEADLINE ? depth : 1;
+        for (; d <= depth && !_expired; d += 1) {
+            ArrayList<Variation> found = new ArrayList<>();
+            for (Move mov : moves) {
+                boolean full = found.size() < k;
+                int bound = full ? -sense * INFTY
+                    : found.get(k - 1).value();
+                board.makeMove(mov);
+                int value = sense == 1
+                    ? findMove(board, d - 1, false, -1, bound, INFTY)
+                    : findMove(board, d - 1, false, 1, -INFTY, bound);
+                if (!_expired && !_stopped
+                    && (full || sense * value > sense * bound)) {
+                    List<Move> line = principalVariation(board, d - 1);
+                    line.add(0, mov);
+                    int i;
+                    for (i = found.size(); i > 0; i -= 1) {
+                        if (sense * found.get(i - 1).value()
+                            >= sense * value) {
+                            break;
+                        }
+                    }
+                    found.add(i, new Variation(value, line));
+                    if (found.size() > k) {
+                        found.remove(k);
+                    }
+                }
+                board.undo();
+                if (_expired || _stopped) {
+                    break;
+                }
+            }
+            if (_stopped) {
+                return new ArrayList<>();
+            }
+            if (!_expired) {
+                result = found;
+                searched = d;
+                for (int i = found.size() - 1; i >= 0; i -= 1) {
+                    moves.remove(found.get(i).move());
+                    moves.add(0, found.get(i).move());
+                }
+            }
+        }
+        _depthReached = searched;
+        _deadline = NO_DEADLINE;
+        if (!result.isEmpty()) {
+            _valueFound = result.get(0).value();
+        }
+        return result;
+    }
+
+    /** Return the principal variation from BOARD, as given by the best
+     *  moves in my table, up to DEPTH moves long.  BOARD is restored on
+     *  return. */
+    private List<Move> principalVariation(Board board, int depth) {
+        ArrayList<Move> line = new ArrayList<>();
+        while (line.size() < depth && !board.gameOver()) {
+            Move mov = tableMove(board);
+            if (mov == null) {
+                break;
+            }
+            line.add(mov);
+            board.makeMove(mov);
+        }
+        for (int i = 0; i < line.size(); i += 1) {
+            board.undo();
+        }
+        return line;
+    }
+
+    /** Return true iff the last call to findMove or analyze ran out of
+     *  time before searching to the full depth requested. */
+    boolean expired() {
+        return _expired;
+    }
+
+    /** Search BOARD to DEPTH levels, recording the results in my state,
+     *  and return its value.  Unlike findMove, this is not a search for a
+     *  move to be played now, and so does not start a new generation.
+     *  BOARD is restored to its original state on return. */
+    int searchPosition(Board board, int depth) {
+        Network previous = board.network();
+        board.useNetwork(_state.network());
+        _pruning = _state.pruning();
+        try {
+            if (board.whoseMove() == WHITE) {
+                return findMove(board, depth, false, 1, -INFTY, INFTY);
+            } else {
+                return findMove(board, depth, false, -1, -INFTY, INFTY);
+            }
+        } finally {
+            board.useNetwork(previous);
+        }
+    }
+
+    /** Return the best move recorded in my table for BOARD, or null if
+     *  none is recorded. */
+    Move tableMove(Board board) {
+        Move mov = TranspositionTable.move(_table.probe(board.key()));
+        if (mov != null && board.listsMove(mov)) {
+            return mov;
+        }
+        return null;
+    }
+
+    /** Cause any search in progress to return as soon as possible, and
+     *  all future searches to return immediately.  May be called from
+     *  any thread. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Return the depth of the deepest search completed by the last
+     *  call to findMove. */
+    int depthReached() {
+        return _depthReached;
+    }
+
+    /** Return the value (positive if good for white) of the position
+     *  searched by the last call to findMove, according to the deepest
+     *  search it completed, or its static value if it completed none. */
+    int valueFound() {
+        return _valueFound;
+    }
+
+    /** Return the number of interior positions that I have visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return true iff stop() has been called. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Find a move from position BOARD and return its value, recording
+     *  the move found in _lastFoundMove iff SAVEMOVE. The move
+     *  should have maximal value or have value > BETA if SENSE==1,
+     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
+     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
+     *  of the board value and does not set _lastMoveFound. */
+    private int findMove(Board board, int depth, boolean saveMove, int sense,
+                         int alpha, int beta) {
+        if (depth == 0 || board.gameOver()) {
+            return evaluate(board);
+        }
+        if (abandoned()) {
+            return 0;
+        }
+        long key = board.key();
+        long entry = _table.probe(key);
+        Move hashMove = TranspositionTable.move(entry);
+        if (_table.usable(entry, depth, alpha, beta)) {
+            if (!saveMove) {
+                return value(entry);
+            }
+            if (hashMove != null && board.listsMove(hashMove)) {
+                _lastFoundMove = hashMove;
+                return value(entry);
+            }
+        }
+
+        boolean quiet = !saveMove && !board.jumpPossible();
+        if (quiet && depth == RAZOR_DEPTH && _pruning.contains(RAZORING)
+            && hopeless(evaluate(board), RAZOR_MARGIN, sense, alpha, beta)) {
+            depth -= 1;
+        }
+        boolean futile = quiet && depth <= FUTILITY_DEPTH
+            && _pruning.contains(FUTILITY)
+            && hopeless(evaluate(board), FUTILITY_MARGIN * depth, sense,
+                        alpha, beta);
+
+        int alpha0 = alpha, beta0 = beta;
+        Move best;
+        best = null;
+        int bestVal;
+        ArrayList<Move> moves = board.getMoves();
+        order(moves, hashMove, board.whoseMove());
+        int[] leafScores =
+            depth == 1 && !futile && board.network() == null
+            ? _leaves.score(board, moves) : null;
+        if (sense == 1) {
+            bestVal = -INFTY;
+            for (int i = 0; i < moves.size(); i += 1) {
+                if (futile && i > 0) {
+                    break;
+                }
+                Move mov = moves.get(i);
+                int response;
+                if (leafScores != null) {
+                    response = leafScores[i];
+                } else {
+                    board.makeMove(mov);
+                    int r = reduction(board, depth, i, quiet);
+                    response = findMove(board, depth - 1 - r,
+                                        false, -1, alpha, beta);
+                    if (r > 0 && response > alpha) {
+                        response = findMove(board, depth - 1,
+                                            false, -1, alpha, beta);
+                    }
+                    board.undo();
+                }
+                if (response >= bestVal) {
+                    best = mov;
+                    bestVal = response;
+                    alpha = Math.max(response, alpha);
+                }
+                if (beta <= alpha) {
+                    break;
+                }
+            }
+        } else {
+            bestVal = INFTY;
+            for (int i = 0; i < moves.size(); i += 1) {
+                if (futile && i > 0) {
+                    break;
+                }
+                Move mov = moves.get(i);
+                int response;
+                if (leafScores != null) {
+                    response = leafScores[i];
+                } else {
+                    board.makeMove(mov);
+                    int r = reduction(board, depth, i, quiet);
+                    response = findMove(board, depth - 1 - r,
+                                        false, 1, alpha, beta);
+                    if (r > 0 && response < beta) {
+                        response = findMove(board, depth - 1,
+                                            false, 1, alpha, beta);
+                    }
+                    board.undo();
+                }
+                if (response <= bestVal) {
+                    best = mov;
+                    bestVal = response;
+                    beta = Math.min(response, beta);
+                }
+                if (beta <= alpha) {
+                    break;
+                }
+            }
+        }
+
+        if (_stopped || _expired) {
+            return 0;
+        }
+        if (beta <= alpha) {
+            _state.addHistory(board.whoseMove(), best, depth);
+        }
+        /* A futile node tried only its first move, which bounds its value
+         * from one side only: worth recording just if it caused a
+         * cutoff. */
+        if (!futile || moves.size() == 1 || beta <= alpha) {
+            _table.store(key, depth, bestVal,
+                         bestVal <= alpha0 ? UPPER
+                         : bestVal >= beta0 ? LOWER : EXACT,
+                         best);
+        }
+        if (saveMove) {
+            _lastFoundMove = best;
+        }
+
+        return bestVal;
+    }
+
+    /** Return true iff a position whose static value is EVAL is so bad
+     *  for the player to move (who is maximizing iff SENSE == 1) that
+     *  gaining MARGIN would still leave its value outside the window
+     *  ALPHA .. BETA. */
+    private static boolean hopeless(int eval, int margin, int sense,
+                                    int alpha, int beta) {
+        return sense == 1 ? (long) eval + margin <= alpha
+            : (long) eval - margin >= beta;
+    }
+
+    /** Return the number of levels by which to reduce the search of
+     *  BOARD, reached by move number I (counting from 0, in the order
+     *  searched) from a position whose search has DEPTH levels to go and
+     *  in which a capture was possible iff !QUIET.  Late moves in quiet
+     *  positions are reduced, unless they let the opponent capture. */
+    private int reduction(Board board, int depth, int i, boolean quiet) {
+        if (quiet && depth >= LMR_MIN_DEPTH && i >= LMR_FULL_MOVES
+            && _pruning.contains(LATE_MOVE_REDUCTION)
+            && !board.jumpPossible()) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /** Return true iff the current search should be abandoned, because it
+     *  was stopped or has run out of time.  Consults the clock only
+     *  occasionally. */
+    private boolean abandoned() {
+        if (_stopped || _expired) {
+            return true;
+        }
+        _nodes += 1;
+        if (_deadline != NO_DEADLINE && _nodes % CLOCK_INTERVAL == 0
+            && System.nanoTime() - _deadline > 0) {
+            _expired = true;
+        }
+        return _expired;
+    }
+
+    /** Reorder MOVES, the moves for WHO, so that FIRST (if present) comes
+     *  first, followed by the rest in decreasing order of history
+     *  score. */
+    private void order(ArrayList<Move> moves, Move first, PieceColor who) {
+        int start;
+        start = 0;
+        int h = first == null ? -1 : moves.indexOf(first);
+        if (h >= 0) {
+            Collections.swap(moves, 0, h);
+            start = 1;
+        }
+        for (int i = start + 1; i < moves.size(); i += 1) {
+            Move mov = moves.get(i);
+            int score = _state.history(who, mov);
+            int j;
+            for (j = i; j > start
+                     && _state.history(who, moves.get(j - 1)) < score;
+                 j -= 1) {
+                moves.set(j, moves.get(j - 1));
+            }
+            moves.set(j, mov);
+        }
+    }
+
+    /** Return the value of BOARD according to its network, if it has
+     *  one and the game is not over, and otherwise its staticScore. */
+    static int evaluate(Board board) {
+        if (board.network() == null || board.gameOver()) {
+            return staticScore(board);
+        }
+        return board.networkValue();
+    }
+
+    /** Return a heuristic value for BOARD: material, plus a bonus for
+     *  each piece that depends only on its row, so that the value is
+     *  unchanged by Board.MIRROR and negated by Board.FLIP, as the
+     *  TranspositionTable requires. */
+    static int staticScore(Board board) {
+        if (board.gameOver()) {
+            if (board.whoseMove() == WHITE) {
+                return -WINNING_VALUE;
+            } else {
+                return WINNING_VALUE;
+            }
+        }
+        int white = 0, black = 0;
+        int whiteMoves = 0, blackMoves = 0;
+        for (int i = 0; i < SIDE * SIDE; i++) {
+            int row = i / SIDE;
+            if (board.get(i) == WHITE) {
+                white += 1;
+                whiteMoves += SIDE - row;
+            }
+            if (board.get(i) == BLACK) {
+                black += 1;
+                blackMoves += row + 1;
+            }
+        }
+        int threat =
+            board.capturers(board.whoseMove()) == 0 ? 0
+            : board.whoseMove() == WHITE ? CAPTURE_THREAT_VALUE
+            : -CAPTURE_THREAT_VALUE;
+        return ((white - black) * 1000)
+            + (whiteMoves - blackMoves) * SIDE * 100 + threat;
+    }
+
+    /** Knowledge from previous searches. */
+    private final SearchState _state;
+    /** Scores the children of positions one level from the frontier,
+     *  when they are evaluated by staticScore. */
+    private final LeafBatch _leaves = new LeafBatch();
+    /** Table of previous results (from _state). */
+    private final TranspositionTable _table;
+    /** Set when the search is to be abandoned. */
+    private volatile boolean _stopped;
+    /** Time (per System.nanoTime) by which the current search must end,
+     *  or NO_DEADLINE. */
+    private long _deadline = NO_DEADLINE;
+    /** Set when the current search has run out of time. */
+    private boolean _expired;
+    /** Number of interior positions visited. */
+    private long _nodes;
+    /** Depth of the deepest search completed by the last findMove. */
+    private int _depthReached;
+    /** The value of the position searched by the last findMove. */
+    private int _valueFound;
+    /** The selective-search techniques used by the current search. */
+    private Set<Pruning> _pruning = EnumSet.noneOf(Pruning.class);
+    /** The move found by the last call to findMove at the root. */
+    private Move _lastFoundMove;
+}
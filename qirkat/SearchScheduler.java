@@ -0,0 +1,261 @@
+package qirkat;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Runs AI searches (and other Jobs, such as solving and analyzing
+ *  positions) for any number of Games on a fixed number of worker
+ *  threads.  Requests wait in a queue ordered by priority and then by
+ *  time of arrival.  Each request may have a time budget, which counts
+ *  from its submission, so that time spent waiting in the queue comes out
+ *  of the time spent searching: a search that starts late searches less
+ *  deeply rather than answering late.  The scheduler keeps statistics on
+ *  the length of its queue and on how long requests wait and run.
+ *  @author Henry Xu
+ */
+class SearchScheduler {
+
+    /** Request priorities, from most to least urgent. */
+    static enum Priority {
+        /** A person is waiting for the move. */
+        INTERACTIVE,
+        /** No one is waiting for the move (e.g., AI against AI). */
+        BATCH;
+    }
+
+    /** A computation that a scheduler may perform: a search of some kind
+     *  that can be given a deadline and stopped early. */
+    interface Job<T> {
+        /** Perform me, finishing by time DEADLINE (per System.nanoTime,
+         *  or Search.NO_DEADLINE for none), and return my result. */
+        T run(long deadline);
+
+        /** Cause a run in progress to return as soon as possible.  May be
+         *  called from any thread. */
+        void stop();
+
+        /** Return true iff my last run was cut short by its deadline. */
+        boolean expired();
+    }
+
+    /** A scheduler that performs at most WORKERS searches at once. */
+    SearchScheduler(int workers) {
+        _workers = workers;
+        _pool = new ThreadPoolExecutor(workers, workers, 0,
+                                       TimeUnit.MILLISECONDS,
+                                       new PriorityBlockingQueue<>(),
+                                       this::newWorker);
+    }
+
+    /** Queue a search for the best move in POSITION to at most DEPTH
+     *  levels, using and adding to STATE, at priority PRIORITY, with a
+     *  budget of BUDGET milliseconds (0 for none) from now.  Returns the
+     *  eventual move. */
+    Future<Move> submit(SearchState state, Position position, int depth,
+                        long budget, Priority priority) {
+        Board board = new Board(position);
+        Search search = new Search(state);
+        return submit(new Job<Move>() {
+            @Override
+            public Move run(long deadline) {
+                return search.findMove(board, depth, deadline);
+            }
+
+            @Override
+            public void stop() {
+                search.stop();
+            }
+
+            @Override
+            public boolean expired() {
+                return search.expired();
+            }
+        }, budget, priority);
+    }
+
+    /** Queue JOB at priority PRIORITY, with a budget of BUDGET
+     *  milliseconds (0 for none) from now.  Returns its eventual
+     *  result. */
+    <T> Future<T> submit(Job<T> job, long budget, Priority priority) {
+        Request<T> req = new Request<>(job, System.nanoTime(), budget,
+                                       priority,
+                                       _sequence.getAndIncrement());
+        _submitted.incrementAndGet();
+        _pool.execute(req);
+        _maxQueued.accumulateAndGet(_pool.getQueue().size(), Math::max);
+        return req;
+    }
+
+    /** Stop accepting requests.  Queued requests are still performed. */
+    void shutdown() {
+        _pool.shutdown();
+    }
+
+    /** Return the number of worker threads. */
+    int workers() {
+        return _workers;
+    }
+
+    /** Return the number of requests waiting to start. */
+    int queueDepth() {
+        return _pool.getQueue().size();
+    }
+
+    /** Return the largest number of requests that have been waiting to
+     *  start at once. */
+    int maxQueueDepth() {
+        return _maxQueued.get();
+    }
+
+    /** Return the number of requests submitted so far. */
+    long submitted() {
+        return _submitted.get();
+    }
+
+    /** Return the number of requests completed so far. */
+    long completed() {
+        return _completed.get();
+    }
+
+    /** Return the number of completed requests whose budget ran out before
+     *  they searched to their full depth. */
+    long expired() {
+        return _expired.get();
+    }
+
+    /** Return the average time that started requests waited in the queue
+     *  (milliseconds). */
+    double averageWait() {
+        long n = _started.get();
+        return n == 0 ? 0.0 : _totalWait.get() / 1e6 / n;
+    }
+
+    /** Return the longest time any request has waited in the queue
+     *  (milliseconds). */
+    double maxWait() {
+        return _maxWait.get() / 1e6;
+    }
+
+    /** Return the average time from submission to completion of completed
+     *  requests (milliseconds). */
+    double averageLatency() {
+        long n = _completed.get();
+        return n == 0 ? 0.0 : _totalLatency.get() / 1e6 / n;
+    }
+
+    /** Return a one-line summary of my statistics. */
+    String statistics() {
+        return String.format("%d workers; %d queued (max %d); "
+                             + "%d of %d requests done, %d cut short; "
+                             + "wait avg %.1f ms, max %.1f ms; "
+                             + "latency avg %.1f ms",
+                             workers(), queueDepth(), maxQueueDepth(),
+                             completed(), submitted(), expired(),
+                             averageWait(), maxWait(), averageLatency());
+    }
+
+    /** Return a new worker thread that runs R. */
+    private Thread newWorker(Runnable r) {
+        Thread t = new Thread(r, "qirkat-search-"
+                              + _threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+
+    /** A queued job, producing a T. */
+    private class Request<T> extends FutureTask<T>
+        implements Comparable<Request<?>> {
+
+        /** A request to perform JOB, submitted at time SUBMITTED
+         *  (nanoseconds) with BUDGET milliseconds (0 for none) at
+         *  PRIORITY, and numbered SEQUENCE in order of submission. */
+        Request(Job<T> job, long submitted, long budget, Priority priority,
+                long sequence) {
+            super(() -> job.run(budget <= 0 ? Search.NO_DEADLINE
+                                : submitted + budget * 1_000_000));
+            _job = job;
+            _arrival = submitted;
+            _priority = priority;
+            _sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long wait = start - _arrival;
+            _started.incrementAndGet();
+            _totalWait.addAndGet(wait);
+            _maxWait.accumulateAndGet(wait, Math::max);
+            super.run();
+        }
+
+        @Override
+        protected void set(T result) {
+            finished();
+            super.set(result);
+        }
+
+        @Override
+        protected void setException(Throwable excp) {
+            finished();
+            super.setException(excp);
+        }
+
+        /** Record the completion of this request.  Called before its
+         *  result is made available, so that the statistics include it by
+         *  the time its submitter sees the result. */
+        private void finished() {
+            _totalLatency.addAndGet(System.nanoTime() - _arrival);
+            if (_job.expired()) {
+                _expired.incrementAndGet();
+            }
+            _completed.incrementAndGet();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            _job.stop();
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public int compareTo(Request<?> other) {
+            int c = _priority.compareTo(other._priority);
+            return c != 0 ? c : Long.compare(_sequence, other._sequence);
+        }
+
+        /** The job performed. */
+        private final Job<T> _job;
+        /** Time of submission (nanoseconds). */
+        private final long _arrival;
+        /** Priority. */
+        private final Priority _priority;
+        /** Order of submission. */
+        private final long _sequence;
+    }
+
+    /** Number of workers. */
+    private final int _workers;
+    /** Performs the searches. */
+    private final ThreadPoolExecutor _pool;
+    /** Number of worker threads created. */
+    private final AtomicInteger _threads = new AtomicInteger();
+    /** Number assigned to the next request. */
+    private final AtomicLong _sequence = new AtomicLong();
+    /** Counts of requests submitted, started, completed, and cut short. */
+    private final AtomicLong
+        _submitted = new AtomicLong(), _started = new AtomicLong(),
+        _completed = new AtomicLong(), _expired = new AtomicLong();
+    /** Longest queue seen. */
+    private final AtomicInteger _maxQueued = new AtomicInteger();
+    /** Total and maximum time waited in the queue, and total time from
+     *  submission to completion (nanoseconds). */
+    private final AtomicLong
+        _totalWait = new AtomicLong(), _maxWait = new AtomicLong(),
+        _totalLatency = new AtomicLong();
+}
@@ -0,0 +1,58 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+import static qirkat.SearchScheduler.Priority.*;
+
+/** Tests of the AI search scheduler.
+ *  @author Henry Xu
+ */
+public class SearchSchedulerTest {
+
+    /** A depth that cannot be searched within the budgets used here. */
+    private static final int DEEP = 40;
+
+    @Test
+    public void testBudgets() throws Exception {
+        SearchScheduler sched = new SearchScheduler(2);
+        Board board = new Board();
+        Position initial = board.snapshot();
+        ArrayList<Future<Move>> moves = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i += 1) {
+            moves.add(sched.submit(new SearchState(12), initial, DEEP, 100,
+                                   i % 2 == 0 ? BATCH : INTERACTIVE));
+        }
+        for (Future<Move> mov : moves) {
+            assertTrue(board.legalMove(mov.get()));
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("budgets not respected: " + elapsed + " ms",
+                   elapsed < 2000);
+        assertEquals(6, sched.submitted());
+        assertEquals(6, sched.completed());
+        assertEquals(6, sched.expired());
+        assertEquals(0, sched.queueDepth());
+        assertTrue(sched.maxQueueDepth() >= 1);
+        assertTrue(sched.maxWait() > 0);
+        sched.shutdown();
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        SearchScheduler sched = new SearchScheduler(1);
+        Board board = new Board();
+        Move expected = new Search(new SearchState(12)).findMove(board, 3);
+        Move mov = sched.submit(new SearchState(12), board.snapshot(), 3, 0,
+                                INTERACTIVE).get();
+        assertEquals(expected, mov);
+        assertEquals(0, sched.expired());
+        sched.shutdown();
+    }
+
+}
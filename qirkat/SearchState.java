@@ -0,0 +1,167 @@
+package qirkat;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/** What AI searches learn and pass on to later searches: a table of the
+ *  results of searched positions, history tables ranking moves by how
+ *  often they have caused cutoffs, and the principal variation (expected
+ *  line of play) found by the last search, along with the Network (if
+ *  any) with which searches evaluate positions and the selective-search
+ *  techniques they use.  A Game keeps one SearchState for all its AIs
+ *  for its whole session, so that each search starts with what the
+ *  searches for previous moves, and previous games, learned.  Older
+ *  knowledge fades: each search starts a new generation of table
+ *  entries, in which entries from long ago are no longer trusted, and
+ *  halves the history scores.  Searches on different threads may share
+ *  a SearchState; concurrent updates of a history score may be lost,
+ *  which affects only the order in which moves are tried.
+ *  @author Henry Xu
+ */
+class SearchState {
+
+    /** Number of squares. */
+    private static final int SQUARES = Move.SIDE * Move.SIDE;
+
+    /** A state with a table of the default size. */
+    SearchState() {
+        this(TranspositionTable.DEFAULT_LOG_SIZE);
+    }
+
+    /** A state with a table of 2**LOGTABLESIZE entries.  The table is
+     *  allocated when first needed, so that a state that is never used
+     *  costs little. */
+    SearchState(int logTableSize) {
+        _logTableSize = logTableSize;
+    }
+
+    /** Return my table of searched positions. */
+    synchronized TranspositionTable table() {
+        if (_table == null) {
+            _table = new TranspositionTable(_logTableSize);
+            _table.setSymmetric(_network == null);
+        }
+        return _table;
+    }
+
+    /** Prepare for a search for the next move to be played: start a new
+     *  generation of table entries, age the history scores, and make sure
+     *  that the moves of the last principal variation are still in the
+     *  table. */
+    void startSearch() {
+        TranspositionTable table = table();
+        table.newGeneration();
+        for (int[] scores : _history) {
+            for (int i = 0; i < scores.length; i += 1) {
+                scores[i] >>= 1;
+            }
+        }
+        for (int i = 0; i < _pvLength; i += 1) {
+            if (TranspositionTable.move(table.probe(_pvKeys[i])) == null) {
+                table.store(_pvKeys[i], 0, 0, TranspositionTable.UPPER,
+                            _pvMoves[i]);
+            }
+        }
+    }
+
+    /** Return the history score of MOV, made by WHO. */
+    int history(PieceColor who, Move mov) {
+        return _history[who.ordinal() - 1][mov.fromIndex() * SQUARES
+                                           + mov.toIndex()];
+    }
+
+    /** Record that MOV, made by WHO, caused a cutoff in a search DEPTH
+     *  levels from the frontier. */
+    void addHistory(PieceColor who, Move mov, int depth) {
+        _history[who.ordinal() - 1][mov.fromIndex() * SQUARES
+                                    + mov.toIndex()] += depth * depth;
+    }
+
+    /** Record the principal variation from BOARD, as given by the best
+     *  moves in my table, up to DEPTH moves long.  BOARD is restored
+     *  on return. */
+    void savePrincipalVariation(Board board, int depth) {
+        TranspositionTable table = table();
+        int n;
+        depth = Math.min(depth, MAX_PV);
+        for (n = 0; n < depth && !board.gameOver(); n += 1) {
+            long key = board.key();
+            Move mov = TranspositionTable.move(table.probe(key));
+            if (mov == null || !board.listsMove(mov)) {
+                break;
+            }
+            _pvKeys[n] = key;
+            _pvMoves[n] = mov;
+            board.makeMove(mov);
+        }
+        _pvLength = n;
+        for (int i = 0; i < n; i += 1) {
+            board.undo();
+        }
+    }
+
+    /** Return the network with which searches evaluate positions, or
+     *  null if they use Search.staticScore. */
+    Network network() {
+        return _network;
+    }
+
+    /** Let searches evaluate positions with NETWORK from now on, or with
+     *  Search.staticScore if NETWORK is null.  A network need not give
+     *  symmetric positions symmetric values, so my table stops sharing
+     *  entries between them while one is in use. */
+    synchronized void setNetwork(Network network) {
+        _network = network;
+        if (_table != null) {
+            _table.setSymmetric(network == null);
+        }
+    }
+
+    /** Return the selective-search techniques that searches use. */
+    synchronized Set<Search.Pruning> pruning() {
+        return EnumSet.copyOf(_pruning);
+    }
+
+    /** Let searches use technique P from now on iff ON. */
+    synchronized void setPruning(Search.Pruning p, boolean on) {
+        if (on) {
+            _pruning.add(p);
+        } else {
+            _pruning.remove(p);
+        }
+    }
+
+    /** Return the number of moves in the last principal variation. */
+    int principalVariationLength() {
+        return _pvLength;
+    }
+
+    /** Return move #K of the last principal variation. */
+    Move principalVariation(int k) {
+        return _pvMoves[k];
+    }
+
+    /** Maximum length of a recorded principal variation. */
+    private static final int MAX_PV = 64;
+
+    /** Log base 2 of the size of _table. */
+    private final int _logTableSize;
+    /** Searched positions, or null if not yet needed. */
+    private TranspositionTable _table;
+    /** History scores for white and black, indexed by
+     *  SQUARES * (source square) + (destination square) of a move's first
+     *  leg. */
+    private final int[][] _history = new int[2][SQUARES * SQUARES];
+    /** The keys of the positions of the last principal variation, and the
+     *  moves made from them. */
+    private final long[] _pvKeys = new long[MAX_PV];
+    /** The moves of the last principal variation. */
+    private final Move[] _pvMoves = new Move[MAX_PV];
+    /** Number of moves in the last principal variation. */
+    private int _pvLength;
+    /** The network with which searches evaluate positions, or null. */
+    private volatile Network _network;
+    /** The selective-search techniques that searches use. */
+    private final EnumSet<Search.Pruning> _pruning =
+        EnumSet.noneOf(Search.Pruning.class);
+}
@@ -0,0 +1,155 @@
+package qirkat;
+
+import java.util.List;
+import java.util.Random;
+
+import static qirkat.PieceColor.*;
+
+/** Plays AI searches with some selective-search techniques enabled (the
+ *  candidate) against searches with none (the baseline), under the same
+ *  time budget per move, to measure what the techniques are worth.  Each
+ *  game starts from a few random moves, and each such opening is played
+ *  twice, with the players exchanging colors.  Reports the candidate's
+ *  wins, losses, and draws (games that reach MAX_PLIES), and the average
+ *  depth that each player's searches completed.
+ *  @author Henry Xu
+ */
+public class SelfPlay {
+
+    /** Depth limit of the searches, high enough that the budget, not the
+     *  limit, governs their depth. */
+    private static final int MAX_DEPTH = 64;
+    /** Length at which a game is declared drawn. */
+    private static final int MAX_PLIES = 300;
+    /** Number of random moves that begin each opening. */
+    private static final int OPENING_PLIES = 3;
+
+    /** Play the games described by ARGS, which are options "--games N"
+     *  (number of games, default 20), "--budget MS" (milliseconds per
+     *  move, default 20), and "--seed S" (for the openings), followed by
+     *  the names of the candidate's techniques (as for the 'prune'
+     *  command). */
+    public static void main(String[] args) {
+        int games = 20;
+        long budget = 20, seed = 47;
+        SearchState candidate = new SearchState(),
+            baseline = new SearchState();
+        StringBuilder names = new StringBuilder();
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--games":
+                    i += 1;
+                    games = Integer.parseInt(args[i]);
+                    break;
+                case "--budget":
+                    i += 1;
+                    budget = Long.parseLong(args[i]);
+                    break;
+                case "--seed":
+                    i += 1;
+                    seed = Long.parseLong(args[i]);
+                    break;
+                default:
+                    Search.Pruning p = Search.Pruning.named(args[i]);
+                    if (p == null) {
+                        usage();
+                    }
+                    candidate.setPruning(p, true);
+                    names.append(" ").append(p.commandName());
+                    break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            usage();
+        }
+
+        SelfPlay match = new SelfPlay(candidate, baseline, budget);
+        Random random = new Random(seed);
+        Board opening = null;
+        for (int g = 0; g < games; g += 1) {
+            if (g % 2 == 0) {
+                opening = opening(random);
+            }
+            match.play(new Board(opening), g % 2 == 0 ? WHITE : BLACK);
+        }
+        System.out.printf("candidate (%s) vs baseline, %d ms/move:%n",
+                          names.length() == 0 ? "none"
+                          : names.substring(1), budget);
+        System.out.printf("  %d wins, %d losses, %d draws (%.1f%%)%n",
+                          match._wins, match._losses, match._draws,
+                          100.0 * (match._wins + 0.5 * match._draws)
+                          / Math.max(1, games));
+        System.out.printf("  average depth: candidate %.2f, "
+                          + "baseline %.2f%n",
+                          match._candidateDepths
+                          / Math.max(1.0, match._candidateMoves),
+                          match._baselineDepths
+                          / Math.max(1.0, match._baselineMoves));
+    }
+
+    /** Report correct usage and exit. */
+    private static void usage() {
+        System.err.println("Usage: java qirkat.SelfPlay [--games N] "
+                           + "[--budget MS] [--seed S] "
+                           + "[lmr] [futility] [razoring]");
+        System.exit(1);
+    }
+
+    /** Return a board after OPENING_PLIES random moves, chosen with
+     *  RANDOM, from the initial position. */
+    private static Board opening(Random random) {
+        Board board = new Board();
+        for (int i = 0; i < OPENING_PLIES && !board.gameOver(); i += 1) {
+            List<Move> moves = board.getMoves();
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /** A match between searches using CANDIDATE and BASELINE, with BUDGET
+     *  milliseconds per move. */
+    private SelfPlay(SearchState candidate, SearchState baseline,
+                     long budget) {
+        _candidate = candidate;
+        _baseline = baseline;
+        _budget = budget;
+    }
+
+    /** Play a game from BOARD, with the candidate playing COLOR, and
+     *  record its result. */
+    private void play(Board board, PieceColor color) {
+        for (int n = 0; n < MAX_PLIES && !board.gameOver(); n += 1) {
+            boolean mine = board.whoseMove() == color;
+            Search search = new Search(mine ? _candidate : _baseline);
+            Move move =
+                search.findMove(new Board(board), MAX_DEPTH,
+                                System.nanoTime() + _budget * 1_000_000);
+            if (mine) {
+                _candidateDepths += search.depthReached();
+                _candidateMoves += 1;
+            } else {
+                _baselineDepths += search.depthReached();
+                _baselineMoves += 1;
+            }
+            board.makeMove(move);
+        }
+        if (!board.gameOver()) {
+            _draws += 1;
+        } else if (board.whoseMove() == color) {
+            _losses += 1;
+        } else {
+            _wins += 1;
+        }
+    }
+
+    /** The players' search states. */
+    private final SearchState _candidate, _baseline;
+    /** Time per move (milliseconds). */
+    private final long _budget;
+    /** The candidate's results. */
+    private int _wins, _losses, _draws;
+    /** Total depths completed by, and number of moves of, each player. */
+    private long _candidateDepths, _candidateMoves,
+        _baselineDepths, _baselineMoves;
+}
@@ -0,0 +1,341 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Proves positions won or lost by depth-first proof-number search
+ *  (df-pn).  Every position has a proof number (the least number of
+ *  positions whose outcome would have to be settled to show that the
+ *  player to move wins) and a disproof number (likewise, to show that
+ *  the player to move loses).  The search always expands a position that
+ *  lies in a most-proving subtree: it gives up on a subtree, returning
+ *  to the parent to try elsewhere, only when the subtree's numbers pass
+ *  thresholds that say another subtree has become more promising.  Since
+ *  Qirkat's captures are forced, many positions have only one or two
+ *  moves, and their outcomes are settled with few positions searched.
+ *  Qirkat has no draws, and since pieces never move backward and a piece
+ *  may not reverse its sideways moves, no game repeats a position.
+ *
+ *  Proof and disproof numbers are kept in a fixed-size table, so that a
+ *  Solver uses bounded memory however long it searches: when a bucket is
+ *  full, the entry that cost least to compute is replaced.  Because the
+ *  legality of a sideways move depends on the move by which the piece
+ *  arrived, positions are identified by both their Board.key() and a
+ *  signature recording which pieces arrived sideways, and from which
+ *  side.  A search ends when the position is settled or when a limit on
+ *  the number of positions searched, or on time, is reached.
+ *  @author Henry Xu
+ */
+class Solver {
+
+    /** The outcome of a search, for the player to move. */
+    static enum Result {
+        /** The player to move can force a win. */
+        WIN,
+        /** The player to move loses against best play. */
+        LOSS,
+        /** The search reached its limits first. */
+        UNKNOWN;
+    }
+
+    /** Default log base 2 of the number of table entries (about 28 bytes
+     *  each). */
+    static final int DEFAULT_LOG_SIZE = 20;
+    /** Default limit on the number of positions searched. */
+    static final long DEFAULT_NODES = 10_000_000;
+    /** A deadline indicating that there is none. */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** A proof or disproof number too large to matter. */
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    /** Number of entries in a bucket of the table. */
+    private static final int WAYS = 4;
+    /** Number of positions searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 4096;
+    /** Longest winning line reported. */
+    private static final int MAX_LINE = 200;
+
+    /** A solver with a table of 2**LOGSIZE entries. */
+    Solver(int logSize) {
+        int size = 1 << logSize;
+        _mask = size - 1;
+        _keys = new long[size];
+        _signatures = new long[size];
+        _proofs = new int[size];
+        _disproofs = new int[size];
+        _work = new int[size];
+    }
+
+    /** Determine the outcome of the position on BOARD for the player to
+     *  move, searching at most MAXNODES positions and stopping at time
+     *  DEADLINE (per System.nanoTime).  BOARD is not changed. */
+    Result solve(Board board, long maxNodes, long deadline) {
+        Board b = new Board(board);
+        long signature = signature(b.history());
+        _nodes = 0;
+        _maxNodes = maxNodes;
+        _deadline = deadline;
+        _stopped = _expired = false;
+        _line.clear();
+        search(b, signature, INFINITY, INFINITY);
+        int entry = find(b.key(), signature);
+        Result result =
+            entry < 0 ? Result.UNKNOWN
+            : _proofs[entry] == 0 ? Result.WIN
+            : _disproofs[entry] == 0 ? Result.LOSS
+            : Result.UNKNOWN;
+        if (result != Result.UNKNOWN) {
+            findLine(b, signature);
+        }
+        return result;
+    }
+
+    /** Cause a solve in progress, and all future solves, to return as
+     *  soon as possible, with result UNKNOWN.  May be called from any
+     *  thread. */
+    void stop() {
+        _stopRequested = true;
+    }
+
+    /** Return true iff the last solve ended because its deadline
+     *  passed. */
+    boolean expired() {
+        return _expired;
+    }
+
+    /** Return the number of positions searched by the last solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the line of play found by the last solve that settled its
+     *  position: the winner's winning moves and the loser's most
+     *  stubborn replies, as far as the table still records them. */
+    List<Move> line() {
+        return _line;
+    }
+
+    /** Return the signature of the position reached by HISTORY: bit K is
+     *  set iff the piece on square K arrived by a sideways move from
+     *  square K - 1, and bit K + 25 iff it arrived from K + 1, so that it
+     *  may not move back there.  (More precisely, the most recent move
+     *  whose source or destination is K determines its bits, as in
+     *  Board.legalMoveAI.) */
+    static long signature(Position.History history) {
+        long touched = 0, result = 0;
+        for (Position.History h = history; !h.isEmpty(); h = h.previous()) {
+            Move mov = h.last();
+            int from = mov.fromIndex(), to = mov.toIndex();
+            if ((touched & (1L << to)) == 0) {
+                result |= arrival(mov);
+            }
+            touched |= (1L << from) | (1L << to);
+        }
+        return result;
+    }
+
+    /** Return the signature after MOV is made in a position with
+     *  signature SIGNATURE. */
+    static long signature(long signature, Move mov) {
+        long squares = (1L << mov.fromIndex()) | (1L << mov.toIndex());
+        signature &= ~(squares | (squares << Board.KEY_BLACK_SHIFT));
+        return signature | arrival(mov);
+    }
+
+    /** Return the signature bit recording the arrival of a piece by MOV
+     *  (0 if it is not a sideways step). */
+    private static long arrival(Move mov) {
+        if (mov.isJump() || mov.row0() != mov.row1()) {
+            return 0;
+        } else if (mov.isRightMove()) {
+            return 1L << mov.toIndex();
+        } else if (mov.isLeftMove()) {
+            return 1L << (mov.toIndex() + Board.KEY_BLACK_SHIFT);
+        }
+        return 0;
+    }
+
+    /** Search the position on BOARD, with signature SIGNATURE, until its
+     *  proof number reaches PROOFLIMIT or its disproof number reaches
+     *  DISPROOFLIMIT, or the search is stopped, and record its numbers.
+     *  BOARD is restored on return. */
+    private void search(Board board, long signature, int proofLimit,
+                        int disproofLimit) {
+        long key = board.key();
+        long start = _nodes;
+        if (limitReached()) {
+            return;
+        }
+        if (board.gameOver()) {
+            store(key, signature, INFINITY, 0, 1);
+            return;
+        }
+        ArrayList<Move> moves = board.getMoves();
+        int n = moves.size();
+        long[] keys = new long[n], signatures = new long[n];
+        boolean[] over = new boolean[n];
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves.get(i));
+            keys[i] = board.key();
+            over[i] = board.gameOver();
+            signatures[i] = signature(signature, moves.get(i));
+            board.undo();
+        }
+        while (true) {
+            int proof = INFINITY, disproof = 0;
+            int best = -1, bestProof = 0, secondProof = INFINITY;
+            for (int i = 0; i < n; i += 1) {
+                int entry = over[i] ? -1 : find(keys[i], signatures[i]);
+                int p = over[i] ? INFINITY : entry < 0 ? 1 : _proofs[entry],
+                    d = over[i] ? 0 : entry < 0 ? 1 : _disproofs[entry];
+                disproof = Math.min(INFINITY, disproof + p);
+                if (d < proof) {
+                    secondProof = proof;
+                    proof = d;
+                    best = i;
+                    bestProof = p;
+                } else if (d < secondProof) {
+                    secondProof = d;
+                }
+            }
+            if (proof >= proofLimit || disproof >= disproofLimit
+                || _stopped) {
+                store(key, signature, proof, disproof, _nodes - start);
+                return;
+            }
+            board.makeMove(moves.get(best));
+            search(board, signatures[best],
+                   disproofLimit - disproof + bestProof,
+                   Math.min(proofLimit, secondProof + 1 + secondProof / 4));
+            board.undo();
+        }
+    }
+
+    /** Count a position searched, and return true iff the search must
+     *  stop, marking it stopped. */
+    private boolean limitReached() {
+        _nodes += 1;
+        if (_nodes > _maxNodes || _stopRequested) {
+            _stopped = true;
+        } else if (_deadline != NO_DEADLINE && _nodes % CLOCK_INTERVAL == 0
+                   && System.nanoTime() - _deadline > 0) {
+            _stopped = _expired = true;
+        }
+        return _stopped;
+    }
+
+    /** Set _line to the line of play from BOARD, with signature
+     *  SIGNATURE, whose outcome the table records. */
+    private void findLine(Board board, long signature) {
+        while (_line.size() < MAX_LINE && !board.gameOver()) {
+            int entry = find(board.key(), signature);
+            if (entry < 0) {
+                break;
+            }
+            boolean winning = _proofs[entry] == 0;
+            Move choice = null;
+            long choiceWork = -1;
+            for (Move mov : board.getMoves()) {
+                board.makeMove(mov);
+                boolean over = board.gameOver();
+                int child = find(board.key(), signature(signature, mov));
+                board.undo();
+                if (winning && over) {
+                    choice = mov;
+                    break;
+                } else if (child < 0) {
+                    continue;
+                }
+                if (winning && _disproofs[child] == 0) {
+                    choice = mov;
+                    break;
+                } else if (!winning && _proofs[child] == 0
+                           && _work[child] > choiceWork) {
+                    choice = mov;
+                    choiceWork = _work[child];
+                }
+            }
+            if (choice == null) {
+                break;
+            }
+            _line.add(choice);
+            board.makeMove(choice);
+            signature = signature(signature, choice);
+        }
+    }
+
+    /** Return the index of the table entry for the position with key KEY
+     *  and signature SIGNATURE, or -1 if there is none. */
+    private int find(long key, long signature) {
+        int start = bucket(key, signature);
+        for (int i = start; i < start + WAYS; i += 1) {
+            if (_keys[i] == (key | OCCUPIED) && _signatures[i] == signature) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Record PROOF and DISPROOF as the numbers of the position with key
+     *  KEY and signature SIGNATURE, whose latest search took WORK
+     *  positions.  An entry's work is the total over all its searches. */
+    private void store(long key, long signature, int proof, int disproof,
+                       long work) {
+        int start = bucket(key, signature);
+        int slot = start;
+        for (int i = start; i < start + WAYS; i += 1) {
+            if (_keys[i] == (key | OCCUPIED) && _signatures[i] == signature) {
+                work += _work[i];
+                slot = i;
+                break;
+            }
+            if (_keys[i] == 0) {
+                slot = i;
+                break;
+            }
+            if (_work[i] < _work[slot]) {
+                slot = i;
+            }
+        }
+        _keys[slot] = key | OCCUPIED;
+        _signatures[slot] = signature;
+        _proofs[slot] = proof;
+        _disproofs[slot] = disproof;
+        _work[slot] = (int) Math.min(Integer.MAX_VALUE, work);
+    }
+
+    /** Return the index of the first entry of the bucket for the position
+     *  with key KEY and signature SIGNATURE. */
+    private int bucket(long key, long signature) {
+        long h = (key * 0x9E3779B97F4A7C15L)
+            ^ (signature * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h >>> 32) & _mask & -WAYS;
+    }
+
+    /** Flag distinguishing an occupied table entry. */
+    private static final long OCCUPIED = 1L << 63;
+
+    /** Mask of the index bits of the table. */
+    private final int _mask;
+    /** The keys (with OCCUPIED set) and signatures of the table's
+     *  positions. */
+    private final long[] _keys, _signatures;
+    /** The proof and disproof numbers of the table's positions. */
+    private final int[] _proofs, _disproofs;
+    /** The number of positions searched to compute each entry. */
+    private final int[] _work;
+    /** Number of positions searched by the current solve. */
+    private long _nodes;
+    /** Limit on _nodes. */
+    private long _maxNodes;
+    /** Time by which the current solve must end, or NO_DEADLINE. */
+    private long _deadline;
+    /** True iff the current solve has reached a limit. */
+    private boolean _stopped;
+    /** True iff the current solve has passed its deadline. */
+    private boolean _expired;
+    /** Set when solves are to be abandoned. */
+    private volatile boolean _stopRequested;
+    /** The line of play found by the last solve. */
+    private final ArrayList<Move> _line = new ArrayList<>();
+}
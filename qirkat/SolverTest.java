@@ -0,0 +1,92 @@
+package qirkat;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of the proof-number solver.
+ *  @author Henry Xu
+ */
+public class SolverTest {
+
+    /** Return the result of solving position PIECES (as for
+     *  Board.setPieces) with WHO to move, using SOLVER. */
+    private static Solver.Result solve(Solver solver, String pieces,
+                                       PieceColor who) {
+        Board b = new Board();
+        b.setPieces(pieces, who);
+        return solver.solve(b, Solver.DEFAULT_NODES, Solver.NO_DEADLINE);
+    }
+
+    @Test
+    public void testSimple() {
+        Solver solver = new Solver(10);
+        assertEquals(Solver.Result.WIN,
+                     solve(solver, "----- --w-- --b-- ----- -----", WHITE));
+        assertEquals("[c2-c4]", solver.line().toString());
+        assertEquals(Solver.Result.LOSS,
+                     solve(solver, "b---- ----- ----- ----- ----w", BLACK));
+        assertTrue(solver.line().isEmpty());
+    }
+
+    /** Return true iff the player to move on BOARD, whose position has
+     *  signature SIGNATURE, can force a win, by exhaustive search,
+     *  remembering results in MEMO. */
+    private static boolean wins(Board board, long signature,
+                                HashMap<List<Long>, Boolean> memo) {
+        List<Long> id = List.of(board.key(), signature);
+        Boolean known = memo.get(id);
+        if (known != null) {
+            return known;
+        }
+        boolean result = false;
+        for (Move mov : board.getMoves()) {
+            board.makeMove(mov);
+            boolean childWins =
+                wins(board, Solver.signature(signature, mov), memo);
+            board.undo();
+            if (!childWins) {
+                result = true;
+                break;
+            }
+        }
+        memo.put(id, result);
+        return result;
+    }
+
+    @Test
+    public void testAgainstExhaustiveSearch() {
+        Random random = new Random(48);
+        Solver solver = new Solver(16);
+        HashMap<List<Long>, Boolean> memo = new HashMap<>();
+        for (int n = 0; n < 40; n += 1) {
+            char[] pieces = "-------------------------".toCharArray();
+            for (int i = 0; i < 4; i += 1) {
+                pieces[random.nextInt(pieces.length)] =
+                    i % 2 == 0 ? 'w' : 'b';
+            }
+            Board b = new Board();
+            b.setPieces(new String(pieces),
+                        random.nextBoolean() ? WHITE : BLACK);
+            Solver.Result result =
+                solver.solve(b, Solver.DEFAULT_NODES, Solver.NO_DEADLINE);
+            assertEquals(wins(b, 0, memo) ? Solver.Result.WIN
+                         : Solver.Result.LOSS, result);
+            Board line = new Board(b);
+            for (Move mov : solver.line()) {
+                assertTrue(line.legalMove(mov));
+                line.makeMove(mov);
+            }
+            assertTrue(line.gameOver());
+            assertEquals(result == Solver.Result.WIN,
+                         line.whoseMove() != b.whoseMove());
+        }
+    }
+
+}
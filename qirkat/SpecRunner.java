@@ -0,0 +1,651 @@
+package qirkat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Runs integration-test specifications (the .inp files described in
+ *  testing/README) against Games running in this JVM, rather than in
+ *  separate java processes as testing/test-qirkat.py does.  Each section
+ *  of a specification drives a Game on its own thread through an
+ *  in-memory CommandSource, and reads its output from an in-memory
+ *  Reporter that filters it as the Python tester filters a program's
+ *  standard output.  All specifications run at once, and the results are
+ *  reported, in the order given, in the same form as test-qirkat.py's.
+ *  @author Henry Xu
+ */
+public class SpecRunner {
+
+    /** Run the specifications in the files named by ARGS, reporting the
+     *  results on the standard error, and exit with status 0 iff all
+     *  pass.  An initial "--threads N" limits the number run at once. */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("--threads")) {
+            threads = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        List<String> files = Arrays.asList(args).subList(first, args.length);
+        if (files.isEmpty()) {
+            System.err.println("Usage: java qirkat.SpecRunner "
+                               + "[--threads N] SPEC ...");
+            System.exit(1);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<String[]>> results = new ArrayList<>();
+        for (String file : files) {
+            results.add(pool.submit(() -> runFile(file)));
+        }
+        int errors, problems;
+        errors = problems = 0;
+        for (int i = 0; i < files.size(); i += 1) {
+            String[] result;
+            try {
+                result = results.get(i).get();
+            } catch (InterruptedException | ExecutionException excp) {
+                result = new String[] { FAIL, excp.toString() };
+            }
+            String name = Paths.get(files.get(i)).getFileName().toString();
+            if (result[0].equals(OK)) {
+                System.err.printf("%s: OK%n", name);
+            } else {
+                System.err.printf("%s: %s (%s)%n", name, result[0],
+                                  result[1]);
+                if (result[0].equals(ERROR)) {
+                    errors += 1;
+                } else {
+                    problems += 1;
+                }
+            }
+        }
+        System.err.printf("%nSummary:%n   %3d tests%n   %3d passed%n"
+                          + "   %3d errors%n   %3d problematic tests%n",
+                          files.size(), files.size() - errors - problems,
+                          errors, problems);
+        pool.shutdownNow();
+        System.exit(errors + problems == 0 ? 0 : 1);
+    }
+
+    /** Return the outcome of the specification in file NAME: OK, ERROR, or
+     *  FAIL, followed by an explanation if not OK. */
+    static String[] runFile(String name) {
+        try {
+            return run(Files.readAllLines(Paths.get(name)));
+        } catch (IOException excp) {
+            return new String[] { FAIL, excp.toString() };
+        }
+    }
+
+    /** Return the outcome of the specification whose lines are SPEC: OK,
+     *  ERROR, or FAIL, followed by an explanation if not OK. */
+    static String[] run(List<String> spec) {
+        int totalLimit = DEFAULT_TOTAL_TIME;
+        int divider = -1;
+        for (int i = 0; i < spec.size(); i += 1) {
+            String line = spec.get(i).trim();
+            Matcher m = TOTAL_TIME.matcher(line);
+            if (m.matches()) {
+                totalLimit = Integer.parseInt(m.group(1));
+            } else if (divider < 0 && DIVIDER.matcher(line).matches()) {
+                divider = i;
+            }
+        }
+        ArrayList<Section> sections = new ArrayList<>();
+        if (divider < 0) {
+            sections.add(new Section(spec, 0));
+        } else {
+            sections.add(new Section(spec.subList(0, divider), 0));
+            sections.add(new Section(spec.subList(divider + 1, spec.size()),
+                                     divider + 1));
+            sections.get(0).connect(sections.get(1));
+        }
+
+        ArrayList<Thread> runners = new ArrayList<>();
+        for (Section sect : sections) {
+            Thread runner = new Thread(sect::runScript, "qirkat-spec");
+            runner.setDaemon(true);
+            runner.start();
+            runners.add(runner);
+        }
+        long deadline = System.nanoTime() + totalLimit * 1_000_000_000L;
+        for (Thread runner : runners) {
+            try {
+                runner.join(Math.max(1, (deadline - System.nanoTime())
+                                        / 1_000_000));
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            }
+            if (runner.isAlive()) {
+                for (Section sect : sections) {
+                    sect.stop();
+                }
+                return new String[] {
+                    ERROR, String.format("test time exceeded %d seconds",
+                                         totalLimit) };
+            }
+        }
+
+        String outcome = OK;
+        StringBuilder msg = new StringBuilder();
+        for (Section sect : sections) {
+            if (!sect.outcome().equals(OK)) {
+                if (!outcome.equals(FAIL)) {
+                    outcome = sect.outcome();
+                }
+                if (msg.length() > 0) {
+                    msg.append("/");
+                }
+                msg.append(sect.message());
+            }
+        }
+        return outcome.equals(OK) ? new String[] { OK }
+            : new String[] { outcome, msg.toString() };
+    }
+
+    /** Return LINE with tabs and runs of blanks replaced by single blanks
+     *  and trailing blanks removed, as the Python tester normalizes both
+     *  output and expected output. */
+    static String normalize(String line) {
+        return MULTI_BLANKS.matcher(line.replace('\t', ' ')).replaceAll(" ")
+            .replaceAll("\\s+$", "");
+    }
+
+    /** Outcomes of a test. */
+    static final String OK = "OK", ERROR = "ERROR", FAIL = "FAIL";
+
+    /** Default limits on the time for a whole test and for each expected
+     *  output (seconds). */
+    private static final int DEFAULT_TOTAL_TIME = 120, DEFAULT_OP_LIMIT = 10;
+
+    /** Capacity of the queue of moves passed from one section to the
+     *  other. */
+    private static final int OTHER_CAPACITY = 4;
+
+    /** Marks the end of a queue of lines. */
+    private static final String END = new String("<EOF>");
+
+    /** Pattern for the line separating two sections. */
+    private static final Pattern DIVIDER = Pattern.compile("-{10,}");
+
+    /** Pattern for the total time limit. */
+    private static final Pattern TOTAL_TIME =
+        Pattern.compile("@total-time\\s+(\\d+)");
+
+    /** Runs of blanks. */
+    private static final Pattern MULTI_BLANKS = Pattern.compile("  +");
+
+    /** Script commands. */
+    private static final Pattern
+        TIME = Pattern.compile("@time\\s+([\\d.]+)"),
+        CHECK = Pattern.compile("@([<?])(.*)"),
+        PLAY = Pattern.compile("@(white|black)\\.\\.\\.\\s*(.*)"),
+        SEND_RECV =
+            Pattern.compile("@(send|recv) (white|black)\\.\\.\\.\\s*(.*)");
+
+    /** Output lines reporting a move or the end of the game. */
+    private static final String MOVE_FORMAT = "[a-g][1-7](?:-[a-g][1-7])+";
+    /** Output lines reporting white's move or the end of the game. */
+    private static final Pattern WHITE_MOVE =
+        Pattern.compile("(?:((?:White|Black) wins)|White moves ("
+                        + MOVE_FORMAT + "))\\.$");
+    /** Output lines reporting black's move or the end of the game. */
+    private static final Pattern BLACK_MOVE =
+        Pattern.compile("(?:((?:White|Black) wins)|Black moves ("
+                        + MOVE_FORMAT + "))\\.$");
+
+    /** Output lines kept outside of board dumps. */
+    private static final Pattern KEPT =
+        Pattern.compile("(?i).*(wins|moves|Exception in thread).*");
+
+    /** Raised when a section of a test fails. */
+    private static class TestFailure extends Exception {
+        /** Version of this class's serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** A failure of kind KIND (ERROR or FAIL) described by MSG. */
+        TestFailure(String kind, String msg) {
+            super(msg);
+            _kind = kind;
+        }
+
+        /** Return my kind: ERROR or FAIL. */
+        String kind() {
+            return _kind;
+        }
+
+        /** Kind of failure. */
+        private final String _kind;
+    }
+
+    /** A CommandSource that supplies lines from a queue, ending at END. */
+    private static class QueueSource implements CommandSource {
+        @Override
+        public String getLine(String prompt) {
+            if (_done) {
+                return null;
+            }
+            String line;
+            while (true) {
+                try {
+                    line = _lines.take();
+                    break;
+                } catch (InterruptedException excp) {
+                    /* Ignore InterruptedException */
+                }
+            }
+            if (line == END) {
+                _done = true;
+                return null;
+            }
+            return line;
+        }
+
+        /** Add LINE (or END) to the input. */
+        void add(String line) {
+            _lines.add(line);
+        }
+
+        /** Lines not yet read. */
+        private final BlockingQueue<String> _lines =
+            new LinkedBlockingQueue<>();
+        /** True once END has been read. */
+        private boolean _done;
+    }
+
+    /** A Reporter that queues the lines of the messages it receives that
+     *  the Python tester would keep: those reporting moves and outcomes,
+     *  and board dumps. */
+    private static class FilteringReporter implements Reporter {
+
+        @Override
+        public void errMsg(String format, Object... args) {
+            add(String.format(format, args));
+        }
+
+        @Override
+        public void outcomeMsg(String format, Object... args) {
+            add(String.format(format, args));
+        }
+
+        @Override
+        public void moveMsg(String format, Object... args) {
+            add(String.format(format, args));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        /** Queue the kept lines of MSG, with any prefix ending in a colon
+         *  removed. */
+        private void add(String msg) {
+            for (String line : msg.split("\\R")) {
+                int colon = line.lastIndexOf(':');
+                if (colon >= 0) {
+                    line = line.substring(colon + 1).replaceFirst("^\\s+",
+                                                                  "");
+                }
+                line = normalize(line);
+                boolean delimiter = line.trim().startsWith("===");
+                if (_inDump || delimiter || KEPT.matcher(line).matches()) {
+                    _lines.add(line);
+                }
+                if (delimiter) {
+                    _inDump = !_inDump;
+                }
+            }
+        }
+
+        /** Return the next line, END if there will be no more, or null if
+         *  none arrives within LIMIT seconds. */
+        String get(double limit) {
+            try {
+                return _lines.poll((long) (limit * 1000),
+                                   TimeUnit.MILLISECONDS);
+            } catch (InterruptedException excp) {
+                return null;
+            }
+        }
+
+        /** Mark the end of output. */
+        void end() {
+            _lines.add(END);
+        }
+
+        /** Kept lines not yet read. */
+        private final BlockingQueue<String> _lines =
+            new LinkedBlockingQueue<>();
+        /** True iff within a board dump. */
+        private boolean _inDump;
+    }
+
+    /** One section of a specification, and the Game it drives. */
+    private static class Section {
+
+        /** A section whose lines are LINES, which start at line START of
+         *  the specification. */
+        Section(List<String> lines, int start) {
+            _script = lines;
+            _start = start;
+        }
+
+        /** Connect me and OTHER so that we can pass moves to each
+         *  other. */
+        void connect(Section other) {
+            _fromOther = new ArrayBlockingQueue<>(OTHER_CAPACITY);
+            other._fromOther = new ArrayBlockingQueue<>(OTHER_CAPACITY);
+            _toOther = other._fromOther;
+            other._toOther = _fromOther;
+        }
+
+        /** Return my outcome (OK, ERROR, or FAIL), once runScript has
+         *  finished. */
+        String outcome() {
+            return _outcome;
+        }
+
+        /** Return an explanation of my outcome, if not OK. */
+        String message() {
+            return _message;
+        }
+
+        /** Execute my script, recording the outcome. */
+        void runScript() {
+            try {
+                if (nextCommand() == null) {
+                    throw new TestFailure(FAIL, "No command found");
+                }
+                startGame();
+                for (String cmnd = nextCommand(); cmnd != null;
+                     cmnd = nextCommand()) {
+                    execute(cmnd);
+                }
+                finish();
+                _outcome = OK;
+            } catch (TestFailure excp) {
+                stop();
+                _outcome = excp.kind();
+                _message = String.format("%s near line %d",
+                                         excp.getMessage(), _k + _start);
+            }
+            if (_toOther != null) {
+                _toOther.offer(END);
+            }
+        }
+
+        /** Abandon my game. */
+        void stop() {
+            _input.add(END);
+        }
+
+        /** Start my game on a thread of its own. */
+        private void startGame() {
+            Game game = new Game(new Board(), _input, _output);
+            Thread player = new Thread(() -> {
+                try {
+                    game.process();
+                } catch (RuntimeException excp) {
+                    _output.add("Exception in thread \"game\" " + excp);
+                } finally {
+                    _output.end();
+                }
+            }, "qirkat-spec-game");
+            player.setDaemon(true);
+            player.start();
+        }
+
+        /** Return the next non-blank script line, cleaned as by the Python
+         *  tester, or null if there are none. */
+        private String nextCommand() {
+            while (_k < _script.size()) {
+                String line = normalize(_script.get(_k).trim());
+                _k += 1;
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /** Execute script line CMND. */
+        private void execute(String cmnd) throws TestFailure {
+            Matcher m;
+            if ((m = TIME.matcher(cmnd)).matches()) {
+                try {
+                    _opLimit = Double.parseDouble(m.group(1));
+                } catch (NumberFormatException excp) {
+                    throw new TestFailure(FAIL, "bad number");
+                }
+            } else if (TOTAL_TIME.matcher(cmnd).matches()) {
+                return;
+            } else if ((m = CHECK.matcher(cmnd)).matches()) {
+                checkOutput(m.group(1).equals("?"), m.group(2));
+            } else if ((m = PLAY.matcher(cmnd)).matches()) {
+                playSelf(m.group(1), m.group(2));
+            } else if ((m = SEND_RECV.matcher(cmnd)).matches()) {
+                sendReceiveMoves(m.group(1).equals("send"), m.group(2),
+                                 m.group(3));
+            } else if (cmnd.startsWith("@")) {
+                throw new TestFailure(FAIL, "bad command in script");
+            } else {
+                _input.add(cmnd);
+            }
+        }
+
+        /** Check that the next output line matches PATN, as a regular
+         *  expression if REGEXP, and otherwise exactly. */
+        private void checkOutput(boolean regexp, String patn)
+            throws TestFailure {
+            String line = get();
+            if (line == END) {
+                throw error("premature end of output");
+            }
+            if (line.contains("Exception")) {
+                throw error("uncaught exception occurred: %s", line);
+            }
+            boolean ok;
+            if (regexp) {
+                ok = patn.trim().isEmpty()
+                    || compile(patn).matcher(line).lookingAt();
+            } else {
+                ok = line.equals(patn);
+            }
+            if (!ok) {
+                throw error("output mismatch (%s / %s)", line, patn);
+            }
+        }
+
+        /** Expect moves from my game alternately by both sides, starting
+         *  with TOMOVE, and ending with an outcome matching ENDPATN (if not
+         *  blank). */
+        private void playSelf(String toMove, String endPatn)
+            throws TestFailure {
+            Pattern end = endPatn.trim().isEmpty() ? null : compile(endPatn);
+            while (true) {
+                String[] move = getMove(toMove);
+                if (move[1] == null) {
+                    if (end != null && !end.matcher(move[0]).lookingAt()) {
+                        throw error("outcome does not match end pattern");
+                    }
+                    return;
+                }
+                toMove = toMove.equals("white") ? "black" : "white";
+            }
+        }
+
+        /** Relay moves between my game and the other section's, my game
+         *  moving first iff SENDFIRST, starting with a move by FIRSTMOVER,
+         *  and ending with agreed outcomes matching ENDPATN (if not
+         *  blank). */
+        private void sendReceiveMoves(boolean sendFirst, String firstMover,
+                                      String endPatn) throws TestFailure {
+            Pattern end = endPatn.trim().isEmpty() ? null : compile(endPatn);
+            String secondMover =
+                firstMover.equals("white") ? "black" : "white";
+            String sendMover = sendFirst ? firstMover : secondMover;
+            String recvMover = sendFirst ? secondMover : firstMover;
+            boolean send = sendFirst;
+            String msg;
+            while (true) {
+                if (send) {
+                    String[] mine = getMove(sendMover);
+                    msg = mine[0];
+                    sendOther(msg);
+                    if (mine[1] == null) {
+                        String[] theirs = getOtherMove(recvMover);
+                        if (!msg.equals(theirs[0])) {
+                            throw error("game outcomes don't agree");
+                        }
+                        break;
+                    }
+                }
+                send = true;
+                String[] theirs = getOtherMove(recvMover);
+                if (theirs[1] == null) {
+                    msg = getMove(sendMover)[0];
+                    sendOther(msg);
+                    if (!msg.equals(theirs[0])) {
+                        throw error("game outcomes don't agree");
+                    }
+                    break;
+                }
+                _input.add(theirs[1]);
+            }
+            if (end != null && !end.matcher(msg).lookingAt()) {
+                throw error("outcome does not match end pattern");
+            }
+        }
+
+        /** End my game's input and check that it finishes without further
+         *  output. */
+        private void finish() throws TestFailure {
+            _input.add(END);
+            if (_toOther != null) {
+                _toOther.offer(END);
+            }
+            String line = _output.get(_opLimit);
+            if (line == null) {
+                throw error("program did not terminate properly");
+            } else if (line != END) {
+                throw error("program produced extra output");
+            }
+        }
+
+        /** Return the next line of output, END if there is none, or throw
+         *  a TestFailure if none arrives in time. */
+        private String get() throws TestFailure {
+            if (_eof) {
+                return END;
+            }
+            String line = _output.get(_opLimit);
+            if (line == null) {
+                throw error("timed out waiting for output");
+            }
+            _eof = line == END;
+            return line;
+        }
+
+        /** Return the next output line, which must report a move by WHO or
+         *  the outcome, as { line, move }, with a null move for an
+         *  outcome. */
+        private String[] getMove(String who) throws TestFailure {
+            String line = get();
+            if (line == END) {
+                throw error("game output truncated");
+            }
+            return checkMove(who, line);
+        }
+
+        /** Return the next message from the other section, which must
+         *  report a move by WHO or the outcome, in the form returned by
+         *  getMove. */
+        private String[] getOtherMove(String who) throws TestFailure {
+            if (_fromOther == null) {
+                throw error("no other program");
+            }
+            String line;
+            try {
+                line = _fromOther.poll((long) (_opLimit * 1000),
+                                       TimeUnit.MILLISECONDS);
+            } catch (InterruptedException excp) {
+                line = null;
+            }
+            if (line == null) {
+                throw error("timed out waiting for other's %s move", who);
+            }
+            if (line == END) {
+                throw error("game output truncated");
+            }
+            return checkMove(who, line);
+        }
+
+        /** Return LINE, which must report a move by WHO or the outcome, in
+         *  the form returned by getMove. */
+        private String[] checkMove(String who, String line)
+            throws TestFailure {
+            Matcher m = (who.equals("white") ? WHITE_MOVE : BLACK_MOVE)
+                .matcher(line);
+            if (!m.lookingAt()) {
+                throw error("invalid move for %s (%s)", who, line);
+            }
+            return new String[] { line, m.group(1) != null ? null
+                                  : m.group(2) };
+        }
+
+        /** Pass MSG to the other section. */
+        private void sendOther(String msg) throws TestFailure {
+            if (_toOther == null || !_toOther.offer(msg)) {
+                throw error("other program blocked");
+            }
+        }
+
+        /** Return PATN compiled as a regular expression. */
+        private Pattern compile(String patn) throws TestFailure {
+            try {
+                return Pattern.compile(patn);
+            } catch (IllegalArgumentException excp) {
+                throw new TestFailure(FAIL, "bad test pattern: " + patn);
+            }
+        }
+
+        /** Return an ERROR failure whose message is formed from FORMAT and
+         *  ARGS as for String.format. */
+        private TestFailure error(String format, Object... args) {
+            return new TestFailure(ERROR, String.format(format, args));
+        }
+
+        /** My script. */
+        private final List<String> _script;
+        /** Line number in the specification of the start of _script. */
+        private final int _start;
+        /** Index of the next line of _script. */
+        private int _k;
+        /** Time limit for each expected output (seconds). */
+        private double _opLimit = DEFAULT_OP_LIMIT;
+        /** Input to my game. */
+        private final QueueSource _input = new QueueSource();
+        /** Output from my game. */
+        private final FilteringReporter _output = new FilteringReporter();
+        /** True once my game's output has ended. */
+        private boolean _eof;
+        /** Messages to and from the other section, or null if none. */
+        private BlockingQueue<String> _toOther, _fromOther;
+        /** Outcome and explanation. */
+        private volatile String _outcome = FAIL, _message = "not run";
+    }
+
+}
@@ -1,27 +1,48 @@
 package qirkat;
 
-/** A Reporter that uses System.out for messages.
+import java.io.PrintStream;
+
+/** A Reporter that writes messages as lines of text to a PrintStream
+ *  (by default, System.out).
  *  @author P. N. Hilfinger
  */
 class TextReporter implements Reporter {
 
+    /** A reporter that writes to System.out. */
+    TextReporter() {
+        this(System.out);
+    }
+
+    /** A reporter that writes to OUT. */
+    TextReporter(PrintStream out) {
+        _out = out;
+    }
+
     @Override
     public void errMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
     @Override
     public void outcomeMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
     @Override
     public void moveMsg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
+    @Override
+    public void flush() {
+        _out.flush();
+    }
+
+    /** Destination of messages. */
+    private final PrintStream _out;
+
 }
 
@@ -0,0 +1,213 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A table of the results of searches of positions, keyed by Board.key(),
+ *  which may be shared by searches running on different threads.
+ *
+ *  Positions that are images of each other under the symmetries of the
+ *  board (see Board.transform) share one entry, stored under their
+ *  canonical key in the canonical orientation.  Callers see only their
+ *  own orientation: probe and store transform the recorded move, and
+ *  for a color-exchanging symmetry the value and its bound, on the way
+ *  out and in.  That is sound only for an evaluator that gives a
+ *  position and its images the same value (negated for a color
+ *  exchange), as Search.staticScore does; see setSymmetric.
+ *
+ *  Each entry occupies two longs: the data and the key XORed with the
+ *  data.  An entry whose two halves were written by different threads
+ *  therefore fails to match its key and is ignored, so no locking is
+ *  needed.  The data word holds
+ *      bits  0-31: the value of the position,
+ *      bits 32-37: the depth to which it was searched,
+ *      bits 38-39: what the value represents: EXACT, LOWER, or UPPER,
+ *      bits 40-45: the generation (modulo 64) in which it was stored,
+ *      bits 46-63: 1 + the id() of the best move found (0 if none).
+ *
+ *  The table persists from search to search, and each search starts a
+ *  new generation (see newGeneration).  Entries from earlier generations
+ *  remain valid, since the value of a position does not change, but an
+ *  entry more than MAX_AGE generations old is considered stale: it still
+ *  supplies a move to try first, but is not trusted to cut off a search
+ *  (see usable), and it is replaced by any new result.  Otherwise, an
+ *  entry is replaced only by results of equal or greater depth, for any
+ *  position.
+ *  @author Henry Xu
+ */
+class TranspositionTable {
+
+    /** Kinds of value: exact, a lower bound, and an upper bound. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Default log base 2 of the number of entries. */
+    static final int DEFAULT_LOG_SIZE = 20;
+
+    /** Number of generations for which an entry remains fresh. */
+    static final int MAX_AGE = 16;
+
+    /** Field positions and sizes within the data word. */
+    private static final int
+        DEPTH_SHIFT = 32, BOUND_SHIFT = 38, AGE_SHIFT = 40, MOVE_SHIFT = 46,
+        MAX_DEPTH = 0x3F, AGE_MASK = 0x3F,
+        MAX_MOVE_ID = (1 << (64 - MOVE_SHIFT)) - 2;
+
+    /** A table with 2**LOGSIZE entries. */
+    TranspositionTable(int logSize) {
+        _shift = 64 - logSize;
+        _entries = new long[2 << logSize];
+    }
+
+    /** Return the data word stored for the position whose key is KEY, or 0
+     *  if there is none. */
+    long probe(long key) {
+        int sym = _symmetric ? Board.symmetry(key) : 0;
+        long canonical = Board.transform(key, sym);
+        int i = index(canonical);
+        long data = _entries[i + 1];
+        if ((_entries[i] ^ data) != canonical) {
+            return 0;
+        }
+        return transform(data, sym);
+    }
+
+    /** Record that the position with key KEY has value VALUE of kind BOUND
+     *  when searched to depth DEPTH, with BEST (possibly null) as the best
+     *  move. */
+    void store(long key, int depth, int value, int bound, Move best) {
+        int sym = _symmetric ? Board.symmetry(key) : 0;
+        key = Board.transform(key, sym);
+        if ((sym & Board.FLIP) != 0) {
+            value = -value;
+            bound = opposite(bound);
+        }
+        if (best != null) {
+            best = best.image(sym);
+        }
+        int i = index(key);
+        long old = _entries[i + 1];
+        int generation = _generation;
+        if (old != 0 && depth(old) > depth && !stale(old, generation)) {
+            return;
+        }
+        long moveCode = best == null || best.id() > MAX_MOVE_ID
+            ? 0 : best.id() + 1;
+        long data = (value & 0xFFFFFFFFL)
+            | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) (generation & AGE_MASK) << AGE_SHIFT)
+            | (moveCode << MOVE_SHIFT);
+        _entries[i] = key ^ data;
+        _entries[i + 1] = data;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_entries, 0);
+    }
+
+    /** Let the images of a position under the board's symmetries share
+     *  its entry iff ON, removing all entries if that changes.  Turn
+     *  this off when values come from an evaluator, such as a trained
+     *  Network, that need not respect those symmetries. */
+    void setSymmetric(boolean on) {
+        if (on != _symmetric) {
+            _symmetric = on;
+            clear();
+        }
+    }
+
+    /** Start a new generation of entries. */
+    void newGeneration() {
+        _generation += 1;
+    }
+
+    /** Return true iff the value in data word DATA, found by probe, may be
+     *  used in place of a search to depth DEPTH with window ALPHA..BETA. */
+    boolean usable(long data, int depth, int alpha, int beta) {
+        if (data == 0 || depth(data) < depth || stale(data, _generation)) {
+            return false;
+        }
+        int value = value(data);
+        switch (bound(data)) {
+        case EXACT:
+            return true;
+        case LOWER:
+            return value >= beta;
+        default:
+            return value <= alpha;
+        }
+    }
+
+    /** Return data word DATA, describing a position, transformed to
+     *  describe the position's image under symmetry SYM. */
+    private static long transform(long data, int sym) {
+        if (sym == 0 || data == 0) {
+            return data;
+        }
+        Move mov = move(data);
+        if (mov != null) {
+            int id = mov.image(sym).id();
+            long moveCode = id > MAX_MOVE_ID ? 0 : id + 1;
+            data = (data & ~(-1L << MOVE_SHIFT)) | (moveCode << MOVE_SHIFT);
+        }
+        if ((sym & Board.FLIP) != 0) {
+            long bound = opposite(bound(data));
+            data = (data & ~(0xFFFFFFFFL | (3L << BOUND_SHIFT)))
+                | (-value(data) & 0xFFFFFFFFL) | (bound << BOUND_SHIFT);
+        }
+        return data;
+    }
+
+    /** Return the kind of value that BOUND, a kind of value, becomes when
+     *  the value is negated. */
+    private static int opposite(int bound) {
+        return bound == LOWER ? UPPER : bound == UPPER ? LOWER : bound;
+    }
+
+    /** Return true iff data word DATA is stale in GENERATION. */
+    private static boolean stale(long data, int generation) {
+        return ((generation - age(data)) & AGE_MASK) > MAX_AGE;
+    }
+
+    /** Return the value recorded in data word DATA. */
+    static int value(long data) {
+        return (int) data;
+    }
+
+    /** Return the search depth recorded in data word DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /** Return the kind of value (EXACT, LOWER, or UPPER) recorded in data
+     *  word DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    /** Return the best move recorded in data word DATA, or null if
+     *  none. */
+    static Move move(long data) {
+        return Move.byId((int) (data >>> MOVE_SHIFT) - 1);
+    }
+
+    /** Return the generation (modulo 64) in which data word DATA was
+     *  stored. */
+    static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** Return the index in _entries of the entry for KEY. */
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> _shift) << 1;
+    }
+
+    /** The entries, as pairs (key ^ data, data). */
+    private final long[] _entries;
+    /** Shift that reduces a hashed key to an entry number. */
+    private final int _shift;
+    /** The current generation. */
+    private volatile int _generation;
+    /** True iff images of a position share its entry. */
+    private volatile boolean _symmetric = true;
+}
@@ -11,7 +11,13 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(MoveTest.class, BoardTest.class,
-                                      CommandTest.class));
+                                      CommandTest.class,
+                                      GameRecordTest.class,
+                                      PositionStoreTest.class,
+                                      GameServerTest.class,
+                                      SearchSchedulerTest.class,
+                                      SolverTest.class,
+                                      AnalyzerTest.class));
     }
 
 }
@@ -0,0 +1,61 @@
+"""Measure the start-up time of the qirkat program.
+
+Usage: python3 startup-bench.py [--runs=N] [--archive=FILE] [-- JAVA-ARGS]
+
+Runs the program N times (default 20) on each of two short sessions: one
+that quits at once, and one in which the AI makes a single move under a
+100 ms budget.  Reports the median and minimum wall-clock times.  If an
+archive (as made by 'make cds' in the qirkat directory) is given, each
+session is also timed with it, for comparison.  JAVA-ARGS (default
+"-cp ..") precede the main class on the java command line; to use an
+archive, they must name the jar from which it was made, as in
+
+    python3 startup-bench.py --archive=../qirkat.jsa -- -cp ../qirkat.jar
+"""
+
+import sys, time
+from getopt import getopt, GetoptError
+from subprocess import run, DEVNULL
+
+SESSIONS = [
+    ("quit", "quit\n"),
+    ("one AI move", "seed 1\nbudget 100\nauto black\nstart\nc2-c3\nquit\n"),
+]
+
+def time_session(command, script, runs):
+    """Return the wall-clock times (seconds) of RUNS executions of COMMAND
+    with SCRIPT as its standard input."""
+    times = []
+    for _ in range(runs):
+        start = time.perf_counter()
+        run(command, input=script.encode(), stdout=DEVNULL, stderr=DEVNULL,
+            check=True)
+        times.append(time.perf_counter() - start)
+    return times
+
+def report(label, times):
+    times = sorted(times)
+    print("{:<28} median {:7.1f} ms   min {:7.1f} ms"
+          .format(label, 1000 * times[len(times) // 2], 1000 * times[0]))
+
+def main():
+    try:
+        opts, java_args = getopt(sys.argv[1:], '', ['runs=', 'archive='])
+    except GetoptError:
+        print(__doc__, file=sys.stderr)
+        sys.exit(1)
+    opts = dict(opts)
+    runs = int(opts.get('--runs', 20))
+    archive = opts.get('--archive')
+    java_args = java_args or ["-cp", ".."]
+
+    configs = [("", [])]
+    if archive:
+        configs.append((" (CDS)", ["-XX:SharedArchiveFile=" + archive]))
+    for name, script in SESSIONS:
+        for suffix, options in configs:
+            command = ["java"] + options + java_args + ["qirkat.Main"]
+            report(name + suffix, time_session(command, script, runs))
+
+if __name__ == "__main__":
+    main()